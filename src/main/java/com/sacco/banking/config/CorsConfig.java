@@ -17,7 +17,7 @@ public class CorsConfig {
                         .allowedOriginPatterns("http://localhost:4200", "http://127.0.0.1:4200")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD", "PATCH")
                         .allowedHeaders("*")
-                        .exposedHeaders("Authorization", "Content-Type", "X-Total-Count")
+                        .exposedHeaders("Authorization", "Content-Type", "X-Total-Count", "ETag", "Content-Disposition")
                         .allowCredentials(true)
                         .maxAge(3600);
             }
@@ -0,0 +1,171 @@
+package com.sacco.banking.config;
+
+import com.sacco.banking.service.AccountDirectory;
+import com.sacco.banking.service.HotAccountService;
+import com.sacco.banking.service.InterestAccrualService;
+import com.sacco.banking.service.LedgerService;
+import com.sacco.banking.service.ScheduledJobs;
+import com.sacco.banking.service.TransactionLimitService;
+import com.sacco.banking.service.TransactionPartitionService;
+import com.sacco.banking.util.MemberNumberGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Every step that brings an existing database up to date, in order. Schema changes run as soon as
+ * the schema update has, before the application serves anything; data backfills and in-memory state
+ * that need the application's services run once it has started. Each step is safe to repeat and
+ * does nothing once applied.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SchemaMigrations implements CommandLineRunner {
+
+    // Must match the allocationSize of the entities' sequence generators
+    private static final int ALLOCATION_SIZE = 50;
+
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "accounts", "accounts_seq",
+            "members", "members_seq",
+            "transactions", "transactions_seq",
+            "notifications", "notifications_seq",
+            "loans", "loans_seq",
+            "savings_goals", "savings_goals_seq",
+            "roles", "roles_seq"
+    );
+
+    // Injected so the schema update has run before the schema steps
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionPartitionService transactionPartitionService;
+    private final HotAccountService hotAccountService;
+    private final LedgerService ledgerService;
+    private final InterestAccrualService interestAccrualService;
+    private final TransactionLimitService transactionLimitService;
+    private final AccountDirectory accountDirectory;
+    private final ScheduledJobs scheduledJobs;
+
+    @PostConstruct
+    public void migrateSchema() {
+        // Move the pooled id sequences past ids handed out by the former IDENTITY columns
+        alignSequences();
+        // Create the member number sequences past the numbers already issued
+        createMemberNumberSequence(MemberNumberGenerator.MEMBER_SEQUENCE, "MB");
+        createMemberNumberSequence(MemberNumberGenerator.ADMIN_SEQUENCE, "ADM");
+        // Let transactions.status take statuses added after the table was created (UNDER_REVIEW)
+        dropStatusConstraint();
+        // Move CheckoutRequestIDs of pending M-Pesa transfers out of mpesa_receipt_number
+        moveCheckoutRequestIds();
+        // Drop the accounts.updated_date index the account directory no longer polls
+        dropAccountsUpdatedDateIndex();
+        // Drop foreign keys to transactions, which a partitioned table cannot keep
+        transactionPartitionService.dropReferencingForeignKeys();
+        // Turn transactions into a table partitioned by month, unless partitioning is disabled
+        if (transactionPartitionService.isEnabled()) {
+            transactionPartitionService.partition();
+        } else {
+            log.info("Transaction partitioning disabled");
+        }
+        // Keep transaction references unique across partitions
+        transactionPartitionService.ensureUniqueReferences();
+        // Create the months ahead and flag rows left in the default partition
+        if (transactionPartitionService.isEnabled()) {
+            transactionPartitionService.maintain();
+        }
+    }
+
+    @Override
+    public void run(String... args) {
+        // Resolve the sharded hot accounts first; the later steps depend on knowing them
+        hotAccountService.loadShardedAccounts();
+        // Journal balances that predate the ledger so every balance can be rebuilt from it
+        ledgerService.backfillOpeningBalances();
+        // Accounts that have not moved since accrual was introduced start accruing on their current balance
+        interestAccrualService.seedMissing();
+        // Seed the shared transaction limit window from existing transactions the first time
+        transactionLimitService.load();
+        // Warm the in-memory account directory used to validate transfers
+        accountDirectory.load();
+        // Backfill the monthly member stats rollup on first start; one node does it
+        scheduledJobs.backfillMemberStats();
+    }
+
+    private void alignSequences() {
+        SEQUENCES.forEach((table, sequence) -> {
+            Boolean present = jdbcTemplate.queryForObject(
+                    "SELECT to_regclass(?) IS NOT NULL AND to_regclass(?) IS NOT NULL",
+                    Boolean.class, table, sequence);
+            if (!Boolean.TRUE.equals(present)) {
+                return;
+            }
+
+            // Never moves a sequence backwards, so this is safe to run on every start
+            Long value = jdbcTemplate.queryForObject(
+                    "SELECT setval('" + sequence + "', GREATEST(" +
+                            "(SELECT COALESCE(MAX(id), 0) FROM " + table + ") + " + ALLOCATION_SIZE + ", " +
+                            "(SELECT last_value FROM " + sequence + ")))",
+                    Long.class);
+            log.debug("Sequence {} aligned with {} at {}", sequence, table, value);
+        });
+        log.info("Id sequences aligned with existing rows");
+    }
+
+    private void createMemberNumberSequence(String sequence, String prefix) {
+        Boolean present = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, sequence);
+        if (Boolean.TRUE.equals(present)) {
+            return;
+        }
+
+        // Continue after the highest number issued, counting blocks leased from the former number_sequences table
+        Long issued = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(CAST(SUBSTRING(member_number FROM ?) AS BIGINT)), 0) " +
+                "FROM members WHERE member_number ~ ?", Long.class, "^" + prefix + "([0-9]+)$", "^" + prefix + "[0-9]+$");
+        Boolean leased = jdbcTemplate.queryForObject("SELECT to_regclass('number_sequences') IS NOT NULL", Boolean.class);
+        if (Boolean.TRUE.equals(leased)) {
+            Long leasedUpTo = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(next_value) - 1, 0) FROM number_sequences " +
+                    "WHERE name = ?", Long.class, "member_number_" + prefix);
+            issued = Math.max(issued, leasedUpTo);
+        }
+
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + sequence + " START WITH " + (issued + 1));
+        log.info("Created sequence {} starting at {}{}", sequence, prefix, issued + 1);
+    }
+
+    private void dropStatusConstraint() {
+        // Only once: dropping takes an exclusive lock on transactions, which every start would wait for
+        Boolean present = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_constraint " +
+                "WHERE conname = 'transactions_status_check' AND conrelid = to_regclass('transactions'))", Boolean.class);
+        if (Boolean.TRUE.equals(present)) {
+            jdbcTemplate.execute("ALTER TABLE transactions DROP CONSTRAINT IF EXISTS transactions_status_check");
+            log.info("Dropped status check constraint of transactions");
+        }
+    }
+
+    private void moveCheckoutRequestIds() {
+        Boolean present = jdbcTemplate.queryForObject("SELECT to_regclass('transactions') IS NOT NULL", Boolean.class);
+        if (!Boolean.TRUE.equals(present)) {
+            return;
+        }
+        int moved = jdbcTemplate.update("UPDATE transactions SET checkout_request_id = mpesa_receipt_number, " +
+                "mpesa_receipt_number = NULL WHERE transaction_type = 'MPESA_WITHDRAWAL' AND status = 'PROCESSING' " +
+                "AND checkout_request_id IS NULL AND mpesa_receipt_number IS NOT NULL");
+        if (moved > 0) {
+            log.info("Moved the checkout request ids of {} processing M-Pesa transfers", moved);
+        }
+    }
+
+    private void dropAccountsUpdatedDateIndex() {
+        Boolean present = jdbcTemplate.queryForObject("SELECT to_regclass('idx_accounts_updated_date') IS NOT NULL", Boolean.class);
+        if (Boolean.TRUE.equals(present)) {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_accounts_updated_date");
+            log.info("Dropped index idx_accounts_updated_date");
+        }
+    }
+}
@@ -40,6 +40,8 @@ public class SecurityConfig {
                         .requestMatchers("/roles/**").permitAll()
                         // Allow actuator endpoints if you're using them
                         .requestMatchers("/actuator/**").permitAll()
+                        // Safaricom posts STK results here without a bearer token; the path carries a secret instead
+                        .requestMatchers("/mpesa/callback/*").permitAll()
                         // Protect all other API endpoints
                         .requestMatchers("/api/**").authenticated()
                         // Allow other requests
@@ -82,7 +84,7 @@ public class SecurityConfig {
 
         // Expose headers that the client can access
         configuration.setExposedHeaders(Arrays.asList(
-                "Authorization", "Content-Type", "X-Total-Count", "Access-Control-Allow-Origin"
+                "Authorization", "Content-Type", "X-Total-Count", "Access-Control-Allow-Origin", "ETag", "Content-Disposition"
         ));
 
         // Allow credentials (important for authentication)
@@ -0,0 +1,38 @@
+package com.sacco.banking.config;
+
+import com.sacco.banking.enums.MemberTier;
+import com.sacco.banking.enums.TransactionType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limits per transaction type and member tier, bound from transaction-limits.*
+ * Types or tiers without an entry are not limited.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "transaction-limits")
+public class TransactionLimitProperties {
+
+    // Length of the sliding window, in hourly buckets
+    private int windowHours = 24;
+
+    private Map<TransactionType, Map<MemberTier, Limit>> limits = new LinkedHashMap<>();
+
+    public Limit limitFor(TransactionType type, MemberTier tier) {
+        Map<MemberTier, Limit> byTier = limits.get(type);
+        return byTier != null ? byTier.get(tier) : null;
+    }
+
+    @Data
+    public static class Limit {
+        private BigDecimal maxPerTransaction;
+        private Integer maxCount;
+        private BigDecimal maxAmount;
+    }
+}
@@ -1,17 +1,32 @@
 package com.sacco.banking.controller;
 
+import com.sacco.banking.dto.request.TransactionHistoryRequest;
 import com.sacco.banking.dto.response.AccountResponse;
 import com.sacco.banking.dto.response.AccountSummaryResponse;
+import com.sacco.banking.dto.response.TransactionHistoryResponse;
 import com.sacco.banking.entity.Member;
 import com.sacco.banking.security.UserPrincipal;
 import com.sacco.banking.service.AccountService;
+import com.sacco.banking.service.StatementService;
+import com.sacco.banking.service.TransactionHistoryService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/accounts")
@@ -20,6 +35,8 @@ import java.util.List;
 public class AccountController {
 
     private final AccountService accountService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final StatementService statementService;
 
     /**
      * Get all accounts for the authenticated member
@@ -74,4 +91,47 @@ public class AccountController {
         AccountResponse account = accountService.getAccountByNumber(member.getMemberNumber(), accountNumber);
         return ResponseEntity.ok(account);
     }
-}
\ No newline at end of file
+
+    /**
+     * Transaction history of an account, newest first, one page per call.
+     * Pass the returned nextCursor as cursor to get the following page.
+     */
+    @GetMapping("/{accountNumber}/transactions")
+    public ResponseEntity<TransactionHistoryResponse> getTransactionHistory(
+            @PathVariable String accountNumber,
+            @Valid @ModelAttribute TransactionHistoryRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        return ResponseEntity.ok(transactionHistoryService.getHistory(accountNumber, principal.getId(), request));
+    }
+
+    /**
+     * Statement of an account as CSV or NDJSON, streamed while it is read.
+     * Covers the whole history when fromDate is left out; toDate defaults to today.
+     */
+    @GetMapping("/{accountNumber}/statement")
+    public ResponseEntity<StreamingResponseBody> getStatement(
+            @PathVariable String accountNumber,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @AuthenticationPrincipal UserPrincipal principal,
+            NativeWebRequest webRequest) {
+
+        StatementService.StatementExport export = statementService.export(accountNumber, principal.getId(),
+                principal.isAdmin(), format, fromDate, toDate);
+        // Runs however the streaming ends, including timeouts and client aborts
+        WebAsyncUtils.getAsyncManager(webRequest).registerCallableInterceptor(StatementService.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        export.release().run();
+                    }
+                });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(export.format().getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(export.fileName()).build().toString())
+                .body(export.body());
+    }
+}
@@ -1,17 +1,34 @@
 package com.sacco.banking.controller;
 
 import com.sacco.banking.dto.request.RegisterRequest;
+import com.sacco.banking.dto.response.InterestRunResponse;
+import com.sacco.banking.dto.response.JobRunResponse;
 import com.sacco.banking.dto.response.MemberResponse;
+import com.sacco.banking.dto.response.TransactionResponse;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.security.UserPrincipal;
 import com.sacco.banking.service.AdminService;
+import com.sacco.banking.service.InterestPostingService;
+import com.sacco.banking.service.JobCoordinator;
+import com.sacco.banking.service.MemberStatsService;
+import com.sacco.banking.service.TransactionArchiveService;
+import com.sacco.banking.service.TransactionReviewService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/admin")
 @RequiredArgsConstructor
@@ -20,6 +37,11 @@ import org.springframework.web.bind.annotation.*;
 public class AdminController {
 
     private final AdminService adminService;
+    private final TransactionReviewService transactionReviewService;
+    private final MemberStatsService memberStatsService;
+    private final TransactionArchiveService transactionArchiveService;
+    private final InterestPostingService interestPostingService;
+    private final JobCoordinator jobCoordinator;
 
     @PostMapping("/create-admin")
     @PreAuthorize("hasRole('ADMIN')")
@@ -44,4 +66,104 @@ public class AdminController {
         MemberResponse member = adminService.demoteToMember(memberNumber);
         return ResponseEntity.ok(member);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/transactions/under-review")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Transactions under review", description = "Transfers held by a fraud rule, oldest first")
+    public ResponseEntity<Page<TransactionResponse>> getTransactionsUnderReview(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(transactionReviewService.getTransactionsUnderReview(PageRequest.of(page, size)));
+    }
+
+    @PostMapping("/transactions/{transactionId}/approve")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Approve held transaction", description = "Release a transfer held for review")
+    public ResponseEntity<TransactionResponse> approveTransaction(
+            @PathVariable String transactionId,
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        return ResponseEntity.ok(transactionReviewService.approve(transactionId, userPrincipal.getMemberNumber()));
+    }
+
+    @PostMapping("/transactions/{transactionId}/reject")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Reject held transaction", description = "Cancel a transfer held for review and refund the member")
+    public ResponseEntity<TransactionResponse> rejectTransaction(
+            @PathVariable String transactionId,
+            @RequestParam(required = false) String reason,
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        return ResponseEntity.ok(transactionReviewService.reject(transactionId, reason, userPrincipal.getMemberNumber()));
+    }
+
+    @GetMapping("/mpesa/unresolved")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Unresolved M-Pesa transfers",
+            description = "M-Pesa transfers whose outcome is unknown and cannot be queried, oldest first")
+    public ResponseEntity<Page<TransactionResponse>> getUnresolvedMpesaTransfers(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(transactionReviewService.getUnresolvedMpesaTransfers(PageRequest.of(page, size)));
+    }
+
+    @PostMapping("/mpesa/transfers/{transactionId}/resolve")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Resolve M-Pesa transfer",
+            description = "Complete a processing M-Pesa transfer Safaricom paid, or fail and refund one it did not")
+    public ResponseEntity<TransactionResponse> resolveMpesaTransfer(
+            @PathVariable String transactionId,
+            @RequestParam boolean paid,
+            @RequestParam(required = false) String receiptNumber,
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        return ResponseEntity.ok(transactionReviewService.resolveMpesaTransfer(transactionId, paid, receiptNumber,
+                userPrincipal.getMemberNumber()));
+    }
+
+    @PostMapping("/member-stats/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild monthly member stats",
+            description = "Recompute the monthly income/expense rollup from transactions, from the given month (yyyy-MM) or from the beginning")
+    public ResponseEntity<Map<String, Integer>> rebuildMemberStats(@RequestParam(required = false) YearMonth fromMonth) {
+        return ResponseEntity.ok(Map.of("rows", memberStatsService.rebuild(fromMonth)));
+    }
+
+    @PostMapping("/transactions/archive")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Archive a month of transactions",
+            description = "Move the finished transactions of the month (yyyy-MM) into archive segments, regardless of their age")
+    public ResponseEntity<Map<String, Integer>> archiveTransactions(@RequestParam YearMonth month) {
+        if (!month.isBefore(YearMonth.now())) {
+            throw new BadRequestException("Only past months can be archived");
+        }
+        return ResponseEntity.ok(Map.of("transactions", transactionArchiveService.archiveMonth(month)));
+    }
+
+    @PostMapping("/interest/runs")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Post a month's interest",
+            description = "Post savings interest for the month (yyyy-MM), or finish a run that stopped part way")
+    public ResponseEntity<InterestRunResponse> postInterest(@RequestParam YearMonth month) {
+        if (!month.isBefore(YearMonth.now())) {
+            throw new BadRequestException("Interest can only be posted for past months");
+        }
+        return ResponseEntity.ok(InterestRunResponse.fromEntity(interestPostingService.post(month)));
+    }
+
+    @GetMapping("/interest/runs")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Recent interest runs")
+    public ResponseEntity<List<InterestRunResponse>> getInterestRuns() {
+        return ResponseEntity.ok(interestPostingService.getRecentRuns().stream()
+                .map(InterestRunResponse::fromEntity)
+                .toList());
+    }
+
+    @GetMapping("/jobs/runs")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Recent scheduled job runs",
+            description = "Which node ran each occurrence of the cluster-wide jobs, how long it took and how many rows it processed")
+    public ResponseEntity<List<JobRunResponse>> getJobRuns(@RequestParam(required = false) String jobName) {
+        return ResponseEntity.ok(jobCoordinator.getRecentRuns(jobName).stream()
+                .map(JobRunResponse::fromEntity)
+                .toList());
+    }
+}
@@ -4,14 +4,20 @@ import com.sacco.banking.dto.response.DashboardResponse;
 import com.sacco.banking.entity.Member;
 import com.sacco.banking.repository.MemberRepository;
 import com.sacco.banking.security.UserPrincipal;
+import com.sacco.banking.service.DashboardCache;
 import com.sacco.banking.service.DashboardService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/dashboard")
@@ -22,19 +28,32 @@ import org.springframework.web.bind.annotation.*;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final DashboardCache dashboardCache;
     private final MemberRepository memberRepository;
 
     @GetMapping
-    @Operation(summary = "Get dashboard data", description = "Retrieve member dashboard information")
-    public ResponseEntity<DashboardResponse> getDashboard(@AuthenticationPrincipal UserPrincipal userPrincipal) {
+    @Operation(summary = "Get dashboard data",
+            description = "Retrieve member dashboard information. Send the last ETag in If-None-Match to get 304 when unchanged")
+    @ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = DashboardResponse.class)))
+    public ResponseEntity<byte[]> getDashboard(@AuthenticationPrincipal UserPrincipal userPrincipal, WebRequest webRequest) {
         if (userPrincipal == null) {
             return ResponseEntity.status(401).build(); // or return custom error response
         }
 
-        Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
-                .orElseThrow(() -> new RuntimeException("Member not found"));
+        DashboardCache.Entry dashboard = dashboardCache.get(userPrincipal.getId(), () -> {
+            Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
+                    .orElseThrow(() -> new RuntimeException("Member not found"));
+            return dashboardService.getDashboardData(member);
+        });
 
-        DashboardResponse dashboardData = dashboardService.getDashboardData(member);
-        return ResponseEntity.ok(dashboardData);
+        // Sets 304 Not Modified when If-None-Match carries the current ETag
+        if (webRequest.checkNotModified(dashboard.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(dashboard.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(dashboard.body());
     }
 }
\ No newline at end of file
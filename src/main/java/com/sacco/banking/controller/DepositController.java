@@ -6,6 +6,7 @@ import com.sacco.banking.entity.Member;
 import com.sacco.banking.repository.MemberRepository;
 import com.sacco.banking.security.UserPrincipal;
 import com.sacco.banking.service.DepositService;
+import com.sacco.banking.service.IdempotencyService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -25,17 +26,20 @@ public class DepositController {
 
     private final DepositService depositService;
     private final MemberRepository memberRepository;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping("/cash")
     @Operation(summary = "Cash deposit", description = "Process cash deposit to member account")
     public ResponseEntity<TransactionResponse> cashDeposit(
             @Valid @RequestBody DepositRequest depositRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) {
 
         Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        TransactionResponse response = depositService.processCashDeposit(depositRequest, member);
+        TransactionResponse response = idempotencyService.execute(idempotencyKey, member, "deposit-cash", depositRequest,
+                () -> depositService.processCashDeposit(depositRequest, member));
         return ResponseEntity.ok(response);
     }
 
@@ -43,12 +47,14 @@ public class DepositController {
     @Operation(summary = "Account to account deposit", description = "Transfer money between member's own accounts")
     public ResponseEntity<TransactionResponse> accountToAccountDeposit(
             @Valid @RequestBody DepositRequest depositRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) {
 
         Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        TransactionResponse response = depositService.processAccountToAccountDeposit(depositRequest, member);
+        TransactionResponse response = idempotencyService.execute(idempotencyKey, member, "deposit-account-to-account", depositRequest,
+                () -> depositService.processAccountToAccountDeposit(depositRequest, member));
         return ResponseEntity.ok(response);
     }
 
@@ -56,12 +62,14 @@ public class DepositController {
     @Operation(summary = "M-Pesa deposit", description = "Process M-Pesa deposit to member account")
     public ResponseEntity<TransactionResponse> mpesaDeposit(
             @Valid @RequestBody DepositRequest depositRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) {
 
         Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        TransactionResponse response = depositService.processMpesaDeposit(depositRequest, member);
+        TransactionResponse response = idempotencyService.execute(idempotencyKey, member, "deposit-mpesa", depositRequest,
+                () -> depositService.processMpesaDeposit(depositRequest, member));
         return ResponseEntity.ok(response);
     }
 }
\ No newline at end of file
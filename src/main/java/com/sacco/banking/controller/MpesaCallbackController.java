@@ -0,0 +1,51 @@
+package com.sacco.banking.controller;
+
+import com.sacco.banking.dto.request.MpesaCallbackRequest;
+import com.sacco.banking.service.MpesaCallbackService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/mpesa")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "M-Pesa", description = "M-Pesa integration callbacks")
+public class MpesaCallbackController {
+
+    private final MpesaCallbackService mpesaCallbackService;
+
+    @PostMapping("/callback/{token}")
+    @Operation(summary = "STK push callback", description = "Receives STK push results from Safaricom")
+    public ResponseEntity<Map<String, Object>> stkCallback(
+            @PathVariable String token,
+            @RequestBody MpesaCallbackRequest callbackRequest,
+            HttpServletRequest httpRequest) {
+        if (!mpesaCallbackService.isCallbackAuthentic(token)) {
+            log.warn("Refused STK callback with an invalid token from {}", httpRequest.getRemoteAddr());
+            return ResponseEntity.notFound().build();
+        }
+
+        MpesaCallbackRequest.StkCallback callback = callbackRequest.getBody() != null
+                ? callbackRequest.getBody().getStkCallback() : null;
+
+        if (callback != null) {
+            log.debug("STK callback for {}: {} {}", callback.getCheckoutRequestId(),
+                    callback.getResultCode(), callback.getResultDesc());
+            // Acknowledge right away; the result is applied with the next batch
+            mpesaCallbackService.acceptCallback(new MpesaCallbackService.StkOutcome(
+                    callback.getCheckoutRequestId(),
+                    Integer.valueOf(0).equals(callback.getResultCode()),
+                    callback.getMetadataValue("MpesaReceiptNumber"),
+                    callback.getResultDesc()));
+        }
+
+        return ResponseEntity.ok(Map.of("ResultCode", 0, "ResultDesc", "Accepted"));
+    }
+}
@@ -7,6 +7,7 @@ import com.sacco.banking.dto.response.TransactionResponse;
 import com.sacco.banking.entity.Member;
 import com.sacco.banking.repository.MemberRepository;
 import com.sacco.banking.security.UserPrincipal;
+import com.sacco.banking.service.IdempotencyService;
 import com.sacco.banking.service.SavingsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -28,6 +29,7 @@ public class SavingsController {
 
     private final SavingsService savingsService;
     private final MemberRepository memberRepository;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping("/goals")
     @Operation(summary = "Get savings goals", description = "Retrieve all savings goals for the member")
@@ -56,12 +58,14 @@ public class SavingsController {
     @Operation(summary = "Make savings deposit", description = "Deposit money to savings account")
     public ResponseEntity<TransactionResponse> makeSavingsDeposit(
             @Valid @RequestBody SavingsDepositRequest depositRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) {
 
         Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        TransactionResponse response = savingsService.makeSavingsDeposit(depositRequest, member);
+        TransactionResponse response = idempotencyService.execute(idempotencyKey, member, "savings-deposit", depositRequest,
+                () -> savingsService.makeSavingsDeposit(depositRequest, member));
         return ResponseEntity.ok(response);
     }
 
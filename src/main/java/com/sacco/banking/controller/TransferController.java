@@ -1,19 +1,32 @@
 package com.sacco.banking.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sacco.banking.dto.request.BatchTransferRequest;
 import com.sacco.banking.dto.request.TransferRequest;
+import com.sacco.banking.dto.response.BatchTransferResponse;
 import com.sacco.banking.dto.response.TransactionResponse;
 import com.sacco.banking.entity.Member;
 import com.sacco.banking.repository.MemberRepository;
 import com.sacco.banking.security.UserPrincipal;
+import com.sacco.banking.service.BatchTransferService;
+import com.sacco.banking.service.IdempotencyService;
 import com.sacco.banking.service.TransferService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 
 @RestController
 @RequestMapping("/transfers")
@@ -23,18 +36,23 @@ import org.springframework.web.bind.annotation.*;
 public class TransferController {
 
     private final TransferService transferService;
+    private final BatchTransferService batchTransferService;
     private final MemberRepository memberRepository;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/internal")
     @Operation(summary = "Internal transfer", description = "Transfer money between SACCO member accounts")
     public ResponseEntity<TransactionResponse> internalTransfer(
             @Valid @RequestBody TransferRequest transferRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) {
 
         Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        TransactionResponse response = transferService.processInternalTransfer(transferRequest, member);
+        TransactionResponse response = idempotencyService.execute(idempotencyKey, member, "transfer-internal", transferRequest,
+                () -> transferService.processInternalTransfer(transferRequest, member));
         return ResponseEntity.ok(response);
     }
 
@@ -42,25 +60,87 @@ public class TransferController {
     @Operation(summary = "External transfer", description = "Transfer money to external bank accounts")
     public ResponseEntity<TransactionResponse> externalTransfer(
             @Valid @RequestBody TransferRequest transferRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) {
 
         Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        TransactionResponse response = transferService.processExternalTransfer(transferRequest, member);
+        TransactionResponse response = idempotencyService.execute(idempotencyKey, member, "transfer-external", transferRequest,
+                () -> transferService.processExternalTransfer(transferRequest, member));
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/mpesa")
-    @Operation(summary = "M-Pesa transfer", description = "Transfer money via M-Pesa")
+    @Operation(summary = "M-Pesa transfer",
+            description = "Transfer money via M-Pesa. The transfer is accepted as PROCESSING; poll the Location URL for its outcome")
     public ResponseEntity<TransactionResponse> mpesaTransfer(
             @Valid @RequestBody TransferRequest transferRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+
+        Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
+                .orElseThrow(() -> new RuntimeException("Member not found"));
+
+        TransactionResponse response = idempotencyService.execute(idempotencyKey, member, "transfer-mpesa", transferRequest,
+                () -> transferService.processMpesaTransfer(transferRequest, member));
+
+        URI statusUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/transfers/{transactionId}")
+                .buildAndExpand(response.getTransactionId())
+                .toUri();
+        return ResponseEntity.accepted().location(statusUrl).body(response);
+    }
+
+    @GetMapping("/{transactionId}")
+    @Operation(summary = "Get transfer", description = "Retrieve the current status of a transfer")
+    public ResponseEntity<TransactionResponse> getTransfer(
+            @PathVariable String transactionId,
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+
+        Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
+                .orElseThrow(() -> new RuntimeException("Member not found"));
+
+        TransactionResponse response = transferService.getTransfer(transactionId, member);
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Batch internal transfer", description = "Post many internal transfers and get a result per transfer")
+    public ResponseEntity<BatchTransferResponse> batchTransfer(
+            @Valid @RequestBody BatchTransferRequest batchRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) {
 
         Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        TransactionResponse response = transferService.processMpesaTransfer(transferRequest, member);
+        BatchTransferResponse response = idempotencyService.executeReserved(idempotencyKey, member, "transfer-batch",
+                batchRequest, BatchTransferResponse.class,
+                () -> batchTransferService.processBatch(batchRequest.getTransfers(), member));
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping(value = "/batch", consumes = "application/x-ndjson")
+    @Operation(summary = "Streamed batch internal transfer",
+            description = "Post internal transfers sent as newline-delimited JSON, processed while the body is read")
+    public ResponseEntity<BatchTransferResponse> streamedBatchTransfer(
+            HttpServletRequest httpRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal UserPrincipal userPrincipal) throws IOException {
+
+        Member member = memberRepository.findByMemberNumber(userPrincipal.getMemberNumber())
+                .orElseThrow(() -> new RuntimeException("Member not found"));
+
+        BatchTransferResponse response = idempotencyService.executeStreamed(idempotencyKey, member, "transfer-batch",
+                httpRequest.getInputStream(), BatchTransferResponse.class, body -> {
+                    try (MappingIterator<TransferRequest> transfers = objectMapper.readerFor(TransferRequest.class)
+                            .readValues(body)) {
+                        return batchTransferService.processBatch(transfers, member);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to read batch transfers", e);
+                    }
+                });
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+}
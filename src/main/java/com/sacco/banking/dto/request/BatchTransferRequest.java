@@ -0,0 +1,13 @@
+package com.sacco.banking.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+    // Items are validated one by one so a bad item fails alone instead of rejecting the batch
+    @NotEmpty(message = "At least one transfer is required")
+    private List<TransferRequest> transfers;
+}
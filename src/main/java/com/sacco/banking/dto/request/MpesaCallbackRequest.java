@@ -0,0 +1,72 @@
+package com.sacco.banking.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * STK push result as posted by Safaricom to the configured CallBackURL
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MpesaCallbackRequest {
+
+    @JsonProperty("Body")
+    private Body body;
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Body {
+        @JsonProperty("stkCallback")
+        private StkCallback stkCallback;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StkCallback {
+        @JsonProperty("MerchantRequestID")
+        private String merchantRequestId;
+
+        @JsonProperty("CheckoutRequestID")
+        private String checkoutRequestId;
+
+        @JsonProperty("ResultCode")
+        private Integer resultCode;
+
+        @JsonProperty("ResultDesc")
+        private String resultDesc;
+
+        @JsonProperty("CallbackMetadata")
+        private CallbackMetadata callbackMetadata;
+
+        public String getMetadataValue(String name) {
+            if (callbackMetadata == null || callbackMetadata.getItems() == null) {
+                return null;
+            }
+            return callbackMetadata.getItems().stream()
+                    .filter(item -> name.equals(item.getName()) && item.getValue() != null)
+                    .map(item -> item.getValue().toString())
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CallbackMetadata {
+        @JsonProperty("Item")
+        private List<Item> items;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Item {
+        @JsonProperty("Name")
+        private String name;
+
+        @JsonProperty("Value")
+        private Object value;
+    }
+}
@@ -0,0 +1,32 @@
+package com.sacco.banking.dto.request;
+
+import com.sacco.banking.enums.TransactionType;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+public class TransactionHistoryRequest {
+    // Opaque nextCursor of the previous page; empty for the first page
+    private String cursor;
+
+    @Min(value = 1, message = "Size must be at least 1")
+    @Max(value = 100, message = "Size must not exceed 100")
+    private int size = 20;
+
+    private TransactionType type;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate fromDate;
+
+    // Inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate toDate;
+
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+}
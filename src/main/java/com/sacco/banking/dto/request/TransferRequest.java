@@ -3,6 +3,7 @@ package com.sacco.banking.dto.request;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -22,4 +23,7 @@ public class TransferRequest {
     private String description;
     private String reference;
     private String transferType; // INTERNAL, EXTERNAL, MPESA
+
+    @Size(max = 100, message = "Device id must not exceed 100 characters")
+    private String deviceId;
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.sacco.banking.dto.response;
+
+import com.sacco.banking.entity.InterestRun;
+import com.sacco.banking.enums.InterestRunStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+@Data
+@Builder
+public class InterestRunResponse {
+    private Long id;
+    private YearMonth period;
+    private InterestRunStatus status;
+    private Integer chunkCount;
+    private Integer accountsPosted;
+    private BigDecimal totalInterest;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+
+    public static InterestRunResponse fromEntity(InterestRun run) {
+        return InterestRunResponse.builder()
+                .id(run.getId())
+                .period(YearMonth.from(run.getPeriod()))
+                .status(run.getStatus())
+                .chunkCount(run.getChunkCount())
+                .accountsPosted(run.getAccountsPosted())
+                .totalInterest(run.getTotalInterest())
+                .startedAt(run.getStartedAt())
+                .completedAt(run.getCompletedAt())
+                .build();
+    }
+}
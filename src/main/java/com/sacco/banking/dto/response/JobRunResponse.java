@@ -0,0 +1,38 @@
+package com.sacco.banking.dto.response;
+
+import com.sacco.banking.entity.JobRun;
+import com.sacco.banking.enums.JobRunStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class JobRunResponse {
+    private Long id;
+    private String jobName;
+    private String runKey;
+    private String owner;
+    private JobRunStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long durationMs;
+    private Long rowsProcessed;
+    private String errorMessage;
+
+    public static JobRunResponse fromEntity(JobRun run) {
+        return JobRunResponse.builder()
+                .id(run.getId())
+                .jobName(run.getJobName())
+                .runKey(run.getRunKey())
+                .owner(run.getOwner())
+                .status(run.getStatus())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .durationMs(run.getDurationMs())
+                .rowsProcessed(run.getRowsProcessed())
+                .errorMessage(run.getErrorMessage())
+                .build();
+    }
+}
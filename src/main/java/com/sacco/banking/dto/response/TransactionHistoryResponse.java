@@ -0,0 +1,15 @@
+package com.sacco.banking.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class TransactionHistoryResponse {
+    private List<TransactionResponse> transactions;
+    // Pass as cursor to get the next page; null on the last page
+    private String nextCursor;
+    private boolean hasMore;
+}
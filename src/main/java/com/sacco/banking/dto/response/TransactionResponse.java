@@ -1,13 +1,17 @@
 package com.sacco.banking.dto.response;
 
 import com.sacco.banking.entity.Transaction;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class TransactionResponse {
     private Long id;
@@ -24,6 +28,15 @@ public class TransactionResponse {
     private LocalDateTime createdAt;
 
     public static TransactionResponse fromEntity(Transaction transaction) {
+        return fromEntity(transaction,
+                transaction.getFromAccount() != null ? transaction.getFromAccount().getAccountNumber() : null,
+                transaction.getToAccount() != null ? transaction.getToAccount().getAccountNumber() : null);
+    }
+
+    /**
+     * Variant for callers that already know the account numbers, so lazy account references stay uninitialized
+     */
+    public static TransactionResponse fromEntity(Transaction transaction, String fromAccountNumber, String toAccountNumber) {
         return TransactionResponse.builder()
                 .id(transaction.getId())
                 .transactionId(transaction.getTransactionId())
@@ -32,10 +45,8 @@ public class TransactionResponse {
                 .fee(transaction.getFee())
                 .description(transaction.getDescription())
                 .reference(transaction.getReference())
-                .fromAccountNumber(transaction.getFromAccount() != null ?
-                        transaction.getFromAccount().getAccountNumber() : null)
-                .toAccountNumber(transaction.getToAccount() != null ?
-                        transaction.getToAccount().getAccountNumber() : null)
+                .fromAccountNumber(fromAccountNumber)
+                .toAccountNumber(toAccountNumber)
                 .status(transaction.getStatus().name())
                 .mpesaReceiptNumber(transaction.getMpesaReceiptNumber())
                 .createdAt(transaction.getCreatedAt())
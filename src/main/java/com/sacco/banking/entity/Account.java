@@ -7,12 +7,21 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts", indexes = {
+        @Index(name = "idx_accounts_metadata_updated", columnList = "metadata_updated_date"),
+        @Index(name = "idx_accounts_member_updated", columnList = "member_id, updated_date")
+})
+// Write only changed columns, so saving a status change never rewrites the balance
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,7 +29,8 @@ import java.time.LocalDateTime;
 public class Account {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "accounts_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "account_number", unique = true, nullable = false)
@@ -33,6 +43,10 @@ public class Account {
     @Column(name = "balance", precision = 15, scale = 2, nullable = false)
     private BigDecimal balance;
 
+    // Credits parked on balance slots of a hot account that the compactor has not folded in yet
+    @Formula("(SELECT COALESCE(SUM(s.amount), 0) FROM account_balance_slots s WHERE s.account_id = id)")
+    private BigDecimal slotBalance;
+
     @Column(name = "minimum_balance", precision = 15, scale = 2)
     private BigDecimal minimumBalance;
 
@@ -49,21 +63,53 @@ public class Account {
     @Column(name = "updated_date", nullable = false)
     private LocalDateTime updatedDate;
 
+    // Moves only when routing metadata changes, unlike updated_date which every balance change bumps
+    @Column(name = "metadata_updated_date")
+    private LocalDateTime metadataUpdatedDate;
+
     @Column(name = "closed_date")
     private LocalDateTime closedDate;
 
+    // Set when the member was told the balance is low; cleared once the balance recovers
+    @Column(name = "low_balance_alerted_at")
+    private LocalDateTime lowBalanceAlertedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "member_id", nullable = false)
     private Member member;
 
+    // Routing metadata as loaded, to tell whether an update changes it
+    @Transient
+    private List<Object> loadedMetadata;
+
+    public BigDecimal getBalance() {
+        if (slotBalance == null || slotBalance.signum() == 0 || balance == null) {
+            return balance;
+        }
+        return balance.add(slotBalance);
+    }
+
     @PrePersist
     protected void onCreate() {
         createdDate = LocalDateTime.now();
         updatedDate = LocalDateTime.now();
+        metadataUpdatedDate = updatedDate;
+    }
+
+    @PostLoad
+    protected void onLoad() {
+        loadedMetadata = metadata();
     }
 
     @PreUpdate
     protected void onUpdate() {
         updatedDate = LocalDateTime.now();
+        if (!metadata().equals(loadedMetadata)) {
+            metadataUpdatedDate = updatedDate;
+        }
+    }
+
+    private List<Object> metadata() {
+        return Arrays.asList(accountNumber, accountType, status, minimumBalance, member != null ? member.getId() : null);
     }
 }
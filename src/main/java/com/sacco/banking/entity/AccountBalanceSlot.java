@@ -0,0 +1,38 @@
+package com.sacco.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Uncompacted credits of a hot (sharded) account. Concurrent credits land on different slots
+ * instead of queueing on the account row; the account's balance is its own column plus all slots.
+ */
+@Entity
+@Table(name = "account_balance_slots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_account_balance_slots_account_slot", columnNames = {"account_id", "slot"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountBalanceSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_balance_slot_seq")
+    @SequenceGenerator(name = "account_balance_slot_seq", sequenceName = "account_balance_slots_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "slot", nullable = false)
+    private Integer slot;
+
+    @Column(name = "amount", precision = 15, scale = 2, nullable = false)
+    private BigDecimal amount;
+}
@@ -0,0 +1,53 @@
+package com.sacco.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Interest an account has earned in a month but not yet been paid. Each day earns the balance held
+ * at its end at the daily rate (annual / 365); the row keeps the balance and the day it has been
+ * accrued up to, so a balance change only has to add the days since then. Posted months are deleted,
+ * which leaves at most the open month (and any unposted closed ones) per account.
+ */
+@Entity
+@Table(name = "interest_accruals", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_interest_accruals_account_period", columnNames = {"account_id", "period"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InterestAccrual {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "interest_accrual_seq")
+    @SequenceGenerator(name = "interest_accrual_seq", sequenceName = "interest_accruals_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // First day of the month
+    @Column(name = "period", nullable = false)
+    private LocalDate period;
+
+    // Unrounded; rounded to cents once, when the month is posted
+    @Column(name = "accrued", precision = 19, scale = 8, nullable = false)
+    private BigDecimal accrued;
+
+    @Column(name = "balance", precision = 15, scale = 2, nullable = false)
+    private BigDecimal balance;
+
+    @Column(name = "rate", precision = 5, scale = 4, nullable = false)
+    private BigDecimal rate;
+
+    // Exclusive: days before it are included in accrued; the first of the next month once closed
+    @Column(name = "accrued_through", nullable = false)
+    private LocalDate accruedThrough;
+}
@@ -0,0 +1,55 @@
+package com.sacco.banking.entity;
+
+import com.sacco.banking.enums.InterestRunStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One month's interest posting. The unique period means a month can only ever be posted by one
+ * run; the run's chunks record which accounts it has reached.
+ */
+@Entity
+@Table(name = "interest_runs", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_interest_runs_period", columnNames = {"period"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InterestRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "interest_run_seq")
+    @SequenceGenerator(name = "interest_run_seq", sequenceName = "interest_runs_seq", allocationSize = 50)
+    private Long id;
+
+    // First day of the month the interest is for
+    @Column(name = "period", nullable = false)
+    private LocalDate period;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private InterestRunStatus status;
+
+    @Column(name = "chunk_count", nullable = false)
+    private Integer chunkCount;
+
+    @Column(name = "accounts_posted")
+    private Integer accountsPosted;
+
+    @Column(name = "total_interest", precision = 15, scale = 2)
+    private BigDecimal totalInterest;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
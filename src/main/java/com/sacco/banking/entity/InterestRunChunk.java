@@ -0,0 +1,54 @@
+package com.sacco.banking.entity;
+
+import com.sacco.banking.enums.InterestRunStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Range of account ids of an interest run. A chunk is marked COMPLETED in the same transaction
+ * that posts its interest, so after a crash it is either fully posted or still PENDING.
+ */
+@Entity
+@Table(name = "interest_run_chunks", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_interest_run_chunks_run_first", columnNames = {"run_id", "first_account_id"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InterestRunChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "interest_run_chunk_seq")
+    @SequenceGenerator(name = "interest_run_chunk_seq", sequenceName = "interest_run_chunks_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+
+    @Column(name = "first_account_id", nullable = false)
+    private Long firstAccountId;
+
+    // Inclusive
+    @Column(name = "last_account_id", nullable = false)
+    private Long lastAccountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private InterestRunStatus status;
+
+    @Column(name = "accounts_posted")
+    private Integer accountsPosted;
+
+    @Column(name = "total_interest", precision = 15, scale = 2)
+    private BigDecimal totalInterest;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
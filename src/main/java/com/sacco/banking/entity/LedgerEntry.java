@@ -0,0 +1,82 @@
+package com.sacco.banking.entity;
+
+import com.sacco.banking.enums.EntryType;
+import com.sacco.banking.enums.LedgerAccount;
+import com.sacco.banking.enums.TransactionType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One leg of a double-entry posting. Entries are append-only: corrections are
+ * written as new, mirrored legs and existing rows are never updated.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries", indexes = {
+        @Index(name = "idx_ledger_entries_account_created", columnList = "account_id, created_at"),
+        @Index(name = "idx_ledger_entries_transaction", columnList = "transaction_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_seq", sequenceName = "ledger_entries_seq", allocationSize = 50)
+    private Long id;
+
+    // No foreign key: transactions is partitioned, so its only unique keys include created_at
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private Transaction transaction;
+
+    // Partition key of the transaction, so joins from the ledger touch a single partition
+    @Column(name = "transaction_created_at")
+    private LocalDateTime transactionCreatedAt;
+
+    @Column(name = "transaction_ref")
+    private String transactionRef;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type")
+    private TransactionType transactionType;
+
+    // Null for legs booked against an internal ledger account (fees, clearing, cash...)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id")
+    private Account account;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "ledger_account", nullable = false)
+    private LedgerAccount ledgerAccount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false)
+    private EntryType entryType;
+
+    @Column(name = "amount", precision = 15, scale = 2, nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+
+    public BigDecimal getSignedAmount() {
+        return entryType == EntryType.CREDIT ? amount : amount.negate();
+    }
+}
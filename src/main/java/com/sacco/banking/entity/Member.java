@@ -23,7 +23,8 @@ import java.util.Set;
 public class Member {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "members_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "member_number", unique = true, nullable = false)
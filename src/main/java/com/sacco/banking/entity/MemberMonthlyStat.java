@@ -0,0 +1,55 @@
+package com.sacco.banking.entity;
+
+import com.sacco.banking.enums.TransactionType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Money into and out of a member's accounts per calendar month and transaction type, maintained
+ * with every posting so reports read a handful of rows instead of the month's transactions.
+ */
+@Entity
+@Table(name = "member_monthly_stats", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_member_monthly_stats_member_month_type",
+                columnNames = {"member_id", "month", "transaction_type"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MemberMonthlyStat {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_monthly_stat_seq")
+    @SequenceGenerator(name = "member_monthly_stat_seq", sequenceName = "member_monthly_stats_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "member_id", nullable = false)
+    private Long memberId;
+
+    // First day of the month
+    @Column(name = "month", nullable = false)
+    private LocalDate month;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type", nullable = false)
+    private TransactionType transactionType;
+
+    @Column(name = "income_amount", precision = 19, scale = 2, nullable = false)
+    private BigDecimal incomeAmount;
+
+    @Column(name = "income_count", nullable = false)
+    private Long incomeCount;
+
+    @Column(name = "expense_amount", precision = 19, scale = 2, nullable = false)
+    private BigDecimal expenseAmount;
+
+    @Column(name = "expense_count", nullable = false)
+    private Long expenseCount;
+}
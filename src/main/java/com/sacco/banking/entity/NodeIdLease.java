@@ -0,0 +1,33 @@
+package com.sacco.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Which running instance holds an id generator node id. An instance takes a node id nobody holds
+ * or whose holder stopped renewing it, so no two live instances share one.
+ * Times are database time, so clock skew between nodes does not matter.
+ */
+@Entity
+@Table(name = "node_id_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NodeIdLease {
+
+    @Id
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "lease_until", nullable = false)
+    private LocalDateTime leaseUntil;
+}
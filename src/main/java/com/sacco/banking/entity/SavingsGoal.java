@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class SavingsGoal {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "savings_goal_seq")
+    @SequenceGenerator(name = "savings_goal_seq", sequenceName = "savings_goals_seq", allocationSize = 50)
     private Long id;
 
     private String goalName;
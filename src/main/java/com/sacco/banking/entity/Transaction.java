@@ -10,9 +10,19 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
+// Range-partitioned by month on created_at (see TransactionPartitionService), so every unique key includes it
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_transactions_transaction_id_created", columnNames = {"transaction_id", "created_at"})
+}, indexes = {
+        @Index(name = "idx_transactions_mpesa_receipt", columnList = "mpesa_receipt_number"),
+        @Index(name = "idx_transactions_checkout_request", columnList = "checkout_request_id"),
+        @Index(name = "idx_transactions_status_created", columnList = "status, created_at"),
+        @Index(name = "idx_transactions_from_account_created", columnList = "from_account_id, created_at, id"),
+        @Index(name = "idx_transactions_to_account_created", columnList = "to_account_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,10 +30,11 @@ import java.time.LocalDateTime;
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "transaction_id", unique = true, nullable = false)
+    @Column(name = "transaction_id", nullable = false)
     private String transactionId;
 
     @Enumerated(EnumType.STRING)
@@ -48,6 +59,10 @@ public class Transaction {
     @Column(name = "mpesa_receipt_number")
     private String mpesaReceiptNumber;
 
+    // Safaricom's id of an STK push while its outcome is awaited; never shown to members
+    @Column(name = "checkout_request_id")
+    private String checkoutRequestId;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     private TransactionStatus status;
@@ -55,6 +70,12 @@ public class Transaction {
     @Column(name = "failure_reason")
     private String failureReason;
 
+    @Column(name = "device_id", length = 100)
+    private String deviceId;
+
+    @Column(name = "review_reason")
+    private String reviewReason;
+
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
@@ -78,7 +99,8 @@ public class Transaction {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Stored precision, so the value held in memory still matches the row when used as the partition key
+        createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
         updatedAt = LocalDateTime.now();
         if (fee == null) {
             fee = BigDecimal.ZERO;
@@ -0,0 +1,60 @@
+package com.sacco.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Archived transactions of one account in one month, as gzip-compressed NDJSON of
+ * TransactionResponse records in (created_at, id) order. Large months are split over several
+ * segments. Segments are written once and never changed; the row per segment, with its time span,
+ * is the sparse index reads use to find the segments they need.
+ */
+@Entity
+@Immutable
+@Table(name = "transaction_archive_segments", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_transaction_archive_segments_account_month_seq",
+                columnNames = {"account_id", "month", "seq"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionArchiveSegment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_archive_segment_seq")
+    @SequenceGenerator(name = "transaction_archive_segment_seq", sequenceName = "transaction_archive_segments_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // First day of the month
+    @Column(name = "month", nullable = false)
+    private LocalDate month;
+
+    @Column(name = "seq", nullable = false)
+    private Integer seq;
+
+    @Column(name = "first_created_at", nullable = false)
+    private LocalDateTime firstCreatedAt;
+
+    @Column(name = "last_created_at", nullable = false)
+    private LocalDateTime lastCreatedAt;
+
+    @Column(name = "entry_count", nullable = false)
+    private Integer entryCount;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "bytea")
+    private byte[] payload;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,49 @@
+package com.sacco.banking.entity;
+
+import com.sacco.banking.enums.TransactionType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Debits a member made of one limited transaction type within one hour, shared by every node so a
+ * limit holds across the cluster. Rows older than the limit window are deleted.
+ */
+@Entity
+@Table(name = "transaction_limit_usage", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_transaction_limit_usage_member_type_hour_start",
+                columnNames = {"member_id", "transaction_type", "hour_start"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionLimitUsage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_limit_usage_seq")
+    @SequenceGenerator(name = "transaction_limit_usage_seq", sequenceName = "transaction_limit_usage_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "member_id", nullable = false)
+    private Long memberId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type", nullable = false)
+    private TransactionType transactionType;
+
+    // Start of the hour
+    @Column(name = "hour_start", nullable = false)
+    private LocalDateTime hourStart;
+
+    @Column(name = "debit_count", nullable = false)
+    private Integer debitCount;
+
+    @Column(name = "debit_amount", precision = 19, scale = 2, nullable = false)
+    private BigDecimal debitAmount;
+}
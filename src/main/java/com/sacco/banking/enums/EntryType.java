@@ -0,0 +1,6 @@
+package com.sacco.banking.enums;
+
+public enum EntryType {
+    DEBIT,
+    CREDIT
+}
@@ -0,0 +1,7 @@
+package com.sacco.banking.enums;
+
+public enum JobRunStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
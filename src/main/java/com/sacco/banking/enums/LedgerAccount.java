@@ -0,0 +1,13 @@
+package com.sacco.banking.enums;
+
+public enum LedgerAccount {
+    MEMBER_ACCOUNT,
+    FEE_INCOME,
+    CASH,
+    MPESA_CLEARING,
+    EXTERNAL_CLEARING,
+    INTEREST_EXPENSE,
+    LOAN_PORTFOLIO,
+    OPENING_BALANCE,
+    SUSPENSE
+}
@@ -0,0 +1,17 @@
+package com.sacco.banking.enums;
+
+public enum MemberTier {
+    BASIC,
+    STANDARD,
+    PREMIUM;
+
+    public static MemberTier fromCreditScore(int creditScore) {
+        if (creditScore >= 750) {
+            return PREMIUM;
+        }
+        if (creditScore >= 600) {
+            return STANDARD;
+        }
+        return BASIC;
+    }
+}
@@ -3,6 +3,7 @@ package com.sacco.banking.enums;
 public enum TransactionStatus {
     PENDING,
     PROCESSING,
+    UNDER_REVIEW,
     COMPLETED,
     FAILED,
     CANCELLED,
@@ -0,0 +1,14 @@
+package com.sacco.banking.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Work that commits in parts failed after some of it was committed, so it must not simply be run again
+ */
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class PartiallyCommittedException extends RuntimeException {
+    public PartiallyCommittedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -7,10 +7,14 @@ import com.sacco.banking.enums.AccountType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,7 +47,48 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     // ✅ This resolves: findByAccountNumber(...)
     Optional<Account> findByAccountNumber(String accountNumber);
 
+    List<Account> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    // Routing metadata only (no entity graph): id, member id, number, type, status, minimum balance, metadata updated date
+    @Query("SELECT a.id, a.member.id, a.accountNumber, a.accountType, a.status, a.minimumBalance, a.metadataUpdatedDate " +
+            "FROM Account a")
+    List<Object[]> findDirectoryEntries();
+
+    @Query("SELECT a.id, a.member.id, a.accountNumber, a.accountType, a.status, a.minimumBalance, a.metadataUpdatedDate " +
+            "FROM Account a WHERE a.metadataUpdatedDate > :since")
+    List<Object[]> findDirectoryEntriesChangedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT a.id FROM Account a")
+    List<Long> findAllIds();
+
+    @Query("SELECT a.id, a.member.id, a.accountNumber, a.accountType, a.status, a.minimumBalance, a.metadataUpdatedDate " +
+            "FROM Account a WHERE a.accountNumber = :accountNumber")
+    List<Object[]> findDirectoryEntry(@Param("accountNumber") String accountNumber);
+
+    @Query("SELECT a.id, a.member.id, a.accountNumber, a.accountType, a.status, a.minimumBalance, a.metadataUpdatedDate " +
+            "FROM Account a WHERE a.id = :id")
+    List<Object[]> findDirectoryEntryById(@Param("id") Long id);
+
+    @Query("SELECT a.id, a.member.id, a.accountNumber, a.accountType, a.status, a.minimumBalance, a.metadataUpdatedDate " +
+            "FROM Account a WHERE a.member.id = :memberId AND a.accountType = :accountType ORDER BY a.id")
+    List<Object[]> findDirectoryEntriesByMemberAndType(@Param("memberId") Long memberId, @Param("accountType") AccountType accountType);
+
     // ✅ This resolves: findFirstByMemberAndAccountType(...)
     Optional<Account> findFirstByMemberAndAccountType(Member member, AccountType accountType);
     List<Account> findByMember(Member member);
+
+    // A credit that lifts the balance out of the low band re-arms the low-balance alert
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.updatedDate = :now, " +
+            "a.lowBalanceAlertedAt = CASE WHEN a.balance + :amount > COALESCE(a.minimumBalance, 0) * 1.1 " +
+            "THEN NULL ELSE a.lowBalanceAlertedAt END WHERE a.id = :accountId")
+    int credit(@Param("accountId") Long accountId,
+               @Param("amount") BigDecimal amount,
+               @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = :balance, a.updatedDate = :now WHERE a.id = :accountId")
+    int overwriteBalance(@Param("accountId") Long accountId,
+                         @Param("balance") BigDecimal balance,
+                         @Param("now") LocalDateTime now);
 }
\ No newline at end of file
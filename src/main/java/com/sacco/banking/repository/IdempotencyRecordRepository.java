@@ -0,0 +1,29 @@
+package com.sacco.banking.repository;
+
+import com.sacco.banking.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // A concurrent insert of the same key waits for the other transaction and then affects no rows
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, operation, request_hash, response_body, created_at) " +
+            "VALUES (:key, :operation, :requestHash, :responseBody, :createdAt) " +
+            "ON CONFLICT (idempotency_key) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(String key, String operation, String requestHash, String responseBody, LocalDateTime createdAt);
+
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET request_hash = :requestHash, response_body = :responseBody " +
+            "WHERE idempotency_key = :key", nativeQuery = true)
+    int complete(String key, String requestHash, String responseBody);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteOlderThan(LocalDateTime cutoff);
+}
@@ -0,0 +1,9 @@
+package com.sacco.banking.repository;
+
+import com.sacco.banking.entity.InterestRunChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InterestRunChunkRepository extends JpaRepository<InterestRunChunk, Long> {
+}
@@ -0,0 +1,20 @@
+package com.sacco.banking.repository;
+
+import com.sacco.banking.entity.InterestRun;
+import com.sacco.banking.enums.InterestRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface InterestRunRepository extends JpaRepository<InterestRun, Long> {
+
+    Optional<InterestRun> findByPeriod(LocalDate period);
+
+    List<InterestRun> findByStatusOrderByPeriodAsc(InterestRunStatus status);
+
+    List<InterestRun> findTop24ByOrderByPeriodDesc();
+}
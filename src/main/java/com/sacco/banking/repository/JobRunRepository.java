@@ -0,0 +1,15 @@
+package com.sacco.banking.repository;
+
+import com.sacco.banking.entity.JobRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+
+    List<JobRun> findTop50ByOrderByStartedAtDesc();
+
+    List<JobRun> findTop50ByJobNameOrderByStartedAtDesc(String jobName);
+}
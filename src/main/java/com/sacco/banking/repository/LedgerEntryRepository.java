@@ -0,0 +1,27 @@
+package com.sacco.banking.repository;
+
+import com.sacco.banking.entity.Account;
+import com.sacco.banking.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    List<LedgerEntry> findByTransactionIdOrderByIdAsc(Long transactionId);
+
+    // Member-account balance as the net of its credit and debit legs
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.entryType = 'CREDIT' THEN e.amount ELSE -e.amount END), 0) " +
+            "FROM LedgerEntry e WHERE e.account.id = :accountId")
+    BigDecimal sumBalanceByAccountId(@Param("accountId") Long accountId);
+
+    // Accounts carrying a balance that predates the ledger
+    @Query("SELECT a FROM Account a WHERE a.balance <> 0 AND NOT EXISTS " +
+            "(SELECT 1 FROM LedgerEntry e WHERE e.account = a)")
+    List<Account> findAccountsWithoutLedgerHistory();
+}
@@ -0,0 +1,20 @@
+package com.sacco.banking.repository;
+
+import com.sacco.banking.entity.MemberMonthlyStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface MemberMonthlyStatRepository extends JpaRepository<MemberMonthlyStat, Long> {
+
+    /**
+     * Income and expenses of the member in the month over all transaction types, as {income, expenses}
+     */
+    @Query("SELECT COALESCE(SUM(s.incomeAmount), 0), COALESCE(SUM(s.expenseAmount), 0) FROM MemberMonthlyStat s " +
+            "WHERE s.memberId = :memberId AND s.month = :month")
+    List<Object[]> sumForMonth(Long memberId, LocalDate month);
+}
@@ -0,0 +1,24 @@
+package com.sacco.banking.repository;
+
+import com.sacco.banking.entity.TransactionArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface TransactionArchiveSegmentRepository extends JpaRepository<TransactionArchiveSegment, Long> {
+
+    /**
+     * Creation time of the newest archived transaction of the account, null when none is archived
+     */
+    @Query("SELECT MAX(s.lastCreatedAt) FROM TransactionArchiveSegment s WHERE s.accountId = :accountId")
+    LocalDateTime findLastArchivedAt(Long accountId);
+
+    /**
+     * Creation time of the newest archived transaction of any account, null when none is archived
+     */
+    @Query("SELECT MAX(s.lastCreatedAt) FROM TransactionArchiveSegment s")
+    LocalDateTime findLastArchivedAt();
+}
@@ -2,20 +2,45 @@ package com.sacco.banking.repository;
 
 import com.sacco.banking.entity.Transaction;
 import com.sacco.banking.entity.Account;
+import com.sacco.banking.enums.TransactionStatus;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.util.IdGenerator;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    Optional<Transaction> findByTransactionId(String transactionId);
+    // Legacy references may repeat across months; transaction_references keeps new ones unique
+    Optional<Transaction> findFirstByTransactionIdOrderByCreatedAtDesc(String transactionId);
+
+    Optional<Transaction> findFirstByTransactionIdAndCreatedAtBetweenOrderByCreatedAtDesc(String transactionId,
+                                                                                      LocalDateTime from, LocalDateTime to);
+
+    Optional<Transaction> findByIdAndCreatedAt(Long id, LocalDateTime createdAt);
+
+    List<Transaction> findByIdInAndCreatedAtIn(Collection<Long> ids, Collection<LocalDateTime> createdAts);
+
+    /**
+     * Transaction by its reference, searched in the partition of the time encoded in the reference.
+     * References that carry no time, or whose transaction is not found there, are looked up everywhere,
+     * newest first.
+     */
+    default Optional<Transaction> findByReference(String transactionId) {
+        return IdGenerator.timestampOfReference(transactionId)
+                .flatMap(issuedAt -> findFirstByTransactionIdAndCreatedAtBetweenOrderByCreatedAtDesc(transactionId,
+                        issuedAt.minusHours(1), issuedAt.plusDays(1)))
+                .or(() -> findFirstByTransactionIdOrderByCreatedAtDesc(transactionId));
+    }
 
     @Query("SELECT t FROM Transaction t WHERE " +
             "(t.fromAccount = :account OR t.toAccount = :account) " +
@@ -30,4 +55,56 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
             @Param("accounts") List<Account> accounts,
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate);
-}
\ No newline at end of file
+
+    /**
+     * Newest transactions touching any of the accounts, each with its from and to account numbers
+     */
+    @Query("SELECT t, fa.accountNumber, ta.accountNumber FROM Transaction t " +
+            "LEFT JOIN t.fromAccount fa LEFT JOIN t.toAccount ta " +
+            "WHERE (fa.id IN :accountIds OR ta.id IN :accountIds) AND t.createdAt >= :since " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<Object[]> findRecentByAccountIds(Collection<Long> accountIds, LocalDateTime since, Pageable pageable);
+
+    List<Transaction> findTop50ByTransactionTypeAndStatusAndCreatedAtBeforeAndCheckoutRequestIdIsNotNullOrderByCreatedAtAsc(
+            TransactionType transactionType, TransactionStatus status, LocalDateTime createdBefore);
+
+    // Sent without a CheckoutRequestID to query by: only an operator can tell what happened
+    Page<Transaction> findByTransactionTypeAndStatusAndCreatedAtBeforeAndCheckoutRequestIdIsNullOrderByCreatedAtAsc(
+            TransactionType transactionType, TransactionStatus status, LocalDateTime createdBefore, Pageable pageable);
+
+    Page<Transaction> findByStatusOrderByCreatedAtAsc(TransactionStatus status, Pageable pageable);
+
+    /**
+     * Move a transaction held for review to its decided status; only one reviewer can win
+     */
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = :status, t.failureReason = :reason, t.processedAt = :now, t.updatedAt = :now " +
+            "WHERE t.id = :id AND t.createdAt = :createdAt AND t.status = com.sacco.banking.enums.TransactionStatus.UNDER_REVIEW")
+    int resolveReview(Long id, LocalDateTime createdAt, TransactionStatus status, String reason, LocalDateTime now);
+
+    /**
+     * Record the M-Pesa CheckoutRequestID of a transfer that is still waiting for its outcome
+     */
+    @Modifying
+    @Query("UPDATE Transaction t SET t.checkoutRequestId = :checkoutRequestId, t.updatedAt = :now " +
+            "WHERE t.id = :id AND t.createdAt = :createdAt AND t.status = com.sacco.banking.enums.TransactionStatus.PROCESSING")
+    int recordCheckoutRequest(Long id, LocalDateTime createdAt, String checkoutRequestId, LocalDateTime now);
+
+    /**
+     * Move a PROCESSING transaction to FAILED; only one caller can win, so the reversal runs once
+     */
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = com.sacco.banking.enums.TransactionStatus.FAILED, " +
+            "t.failureReason = :reason, t.processedAt = :now, t.updatedAt = :now " +
+            "WHERE t.id = :id AND t.createdAt = :createdAt AND t.status = com.sacco.banking.enums.TransactionStatus.PROCESSING")
+    int markFailedIfProcessing(Long id, LocalDateTime createdAt, String reason, LocalDateTime now);
+
+    /**
+     * Move a PROCESSING transaction to COMPLETED with its M-Pesa receipt number, if known
+     */
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = com.sacco.banking.enums.TransactionStatus.COMPLETED, " +
+            "t.mpesaReceiptNumber = :receiptNumber, t.processedAt = :now, t.updatedAt = :now " +
+            "WHERE t.id = :id AND t.createdAt = :createdAt AND t.status = com.sacco.banking.enums.TransactionStatus.PROCESSING")
+    int markCompletedIfProcessing(Long id, LocalDateTime createdAt, String receiptNumber, LocalDateTime now);
+}
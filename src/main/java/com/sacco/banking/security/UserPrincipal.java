@@ -13,6 +13,7 @@ import java.util.stream.Collectors;
 
 @Getter
 public class UserPrincipal implements UserDetails {
+    private final Long id;
     private final String memberNumber;
     private final String email;
     private final String password;
@@ -22,6 +23,7 @@ public class UserPrincipal implements UserDetails {
     private final Collection<? extends GrantedAuthority> authorities;
 
     public UserPrincipal(Member member) {
+        this.id = member.getId();
         this.memberNumber = member.getMemberNumber();
         this.email = member.getEmail();
         this.password = member.getPassword();
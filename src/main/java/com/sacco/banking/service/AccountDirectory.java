@@ -0,0 +1,207 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.Account;
+import com.sacco.banking.entity.Member;
+import com.sacco.banking.enums.AccountStatus;
+import com.sacco.banking.enums.AccountType;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process directory from account number to the metadata needed to route and validate a payment
+ * (ids, owner, type, status, minimum balance). Transfers check ownership and status here and only
+ * touch the database for the balance mutation itself.
+ * Loaded at startup, updated on local changes after commit, and kept in step with other nodes by
+ * polling for accounts whose metadata_updated_date moved; balance changes do not move it. Accounts
+ * removed from the database are evicted by a slower sweep over the account ids.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccountDirectory {
+
+    // Re-read a little before the watermark to tolerate clock skew between nodes
+    private static final long POLL_OVERLAP_SECONDS = 5;
+
+    private final AccountRepository accountRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, AccountInfo> byNumber = new ConcurrentHashMap<>();
+    private final Map<Long, AccountInfo> byId = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime watermark = LocalDateTime.MIN;
+
+    @Transactional(readOnly = true)
+    public void load() {
+        LocalDateTime started = LocalDateTime.now();
+        List<Object[]> rows = accountRepository.findDirectoryEntries();
+        rows.forEach(this::put);
+        if (started.isAfter(watermark)) {
+            watermark = started;
+        }
+        log.info("Account directory loaded with {} accounts", byNumber.size());
+    }
+
+    @Scheduled(fixedDelayString = "${account-directory.refresh-interval-ms:5000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        if (watermark == LocalDateTime.MIN) {
+            return;
+        }
+        accountRepository.findDirectoryEntriesChangedSince(watermark.minusSeconds(POLL_OVERLAP_SECONDS))
+                .forEach(this::put);
+    }
+
+    /**
+     * Drop accounts that no longer exist, e.g. after a purge. An account created during the sweep
+     * may be dropped too; it is looked up again on first use.
+     */
+    @Scheduled(fixedDelayString = "${account-directory.eviction-interval-ms:600000}")
+    @Transactional(readOnly = true)
+    public void evictRemoved() {
+        if (watermark == LocalDateTime.MIN) {
+            return;
+        }
+        Set<Long> present = new HashSet<>(accountRepository.findAllIds());
+        int evicted = 0;
+        for (AccountInfo info : byId.values()) {
+            if (!present.contains(info.getId())) {
+                byId.remove(info.getId(), info);
+                byNumber.remove(info.getAccountNumber(), info);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.info("Account directory evicted {} removed accounts", evicted);
+        }
+    }
+
+    /**
+     * Metadata for the account number; unknown numbers are looked up once in the database.
+     */
+    public Optional<AccountInfo> find(String accountNumber) {
+        if (accountNumber == null) {
+            return Optional.empty();
+        }
+        AccountInfo info = byNumber.get(accountNumber);
+        if (info != null) {
+            return Optional.of(info);
+        }
+        return accountRepository.findDirectoryEntry(accountNumber).stream().findFirst().map(this::put);
+    }
+
+    /**
+     * Metadata for the account id; unknown ids are looked up once in the database.
+     */
+    public Optional<AccountInfo> findById(Long id) {
+        AccountInfo info = byId.get(id);
+        if (info != null) {
+            return Optional.of(info);
+        }
+        return accountRepository.findDirectoryEntryById(id).stream().findFirst().map(this::put);
+    }
+
+    /**
+     * Metadata of the member's oldest account of the type, read from the database and kept here
+     */
+    public Optional<AccountInfo> findFirstOfType(Member member, AccountType accountType) {
+        return accountRepository.findDirectoryEntriesByMemberAndType(member.getId(), accountType).stream()
+                .findFirst().map(this::put);
+    }
+
+    public AccountInfo require(String accountNumber, String notFoundMessage) {
+        return find(accountNumber).orElseThrow(() -> new BadRequestException(notFoundMessage));
+    }
+
+    /**
+     * Record a created or changed account once the surrounding transaction commits, and announce the change.
+     */
+    public void register(Account account) {
+        AccountInfo info = AccountInfo.of(account);
+        eventPublisher.publishEvent(new AccountsChangedEvent(List.of(info.getId())));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(info);
+                }
+            });
+        } else {
+            index(info);
+        }
+    }
+
+    private AccountInfo put(Object[] row) {
+        AccountInfo info = new AccountInfo(
+                (Long) row[0],
+                (Long) row[1],
+                (String) row[2],
+                (AccountType) row[3],
+                (AccountStatus) row[4],
+                toCents((BigDecimal) row[5]));
+        index(info);
+
+        LocalDateTime changedDate = (LocalDateTime) row[6];
+        if (changedDate != null && changedDate.isAfter(watermark)) {
+            watermark = changedDate;
+        }
+        return info;
+    }
+
+    private void index(AccountInfo info) {
+        byNumber.put(info.getAccountNumber(), info);
+        byId.put(info.getId(), info);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).longValue() : 0L;
+    }
+
+    /**
+     * Immutable routing metadata of one account
+     */
+    @Value
+    public static class AccountInfo {
+        long id;
+        long memberId;
+        String accountNumber;
+        AccountType accountType;
+        AccountStatus status;
+        long minimumBalanceCents;
+
+        static AccountInfo of(Account account) {
+            return new AccountInfo(account.getId(), account.getMember().getId(), account.getAccountNumber(),
+                    account.getAccountType(), account.getStatus(), toCents(account.getMinimumBalance()));
+        }
+
+        public boolean isOwnedBy(Member member) {
+            return member.getId() != null && memberId == member.getId();
+        }
+
+        public boolean isActive() {
+            return status == AccountStatus.ACTIVE;
+        }
+
+        public BigDecimal getMinimumBalance() {
+            return BigDecimal.valueOf(minimumBalanceCents, 2);
+        }
+    }
+}
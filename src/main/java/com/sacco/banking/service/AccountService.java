@@ -4,27 +4,30 @@ import com.sacco.banking.dto.request.CreateAccountRequest;
 import com.sacco.banking.dto.response.AccountResponse;
 import com.sacco.banking.dto.response.AccountSummaryResponse;
 import com.sacco.banking.entity.Account;
+import com.sacco.banking.entity.InterestRun;
 import com.sacco.banking.entity.Member;
 import com.sacco.banking.entity.Notification;
 import com.sacco.banking.enums.AccountStatus;
 import com.sacco.banking.enums.AccountType;
+import com.sacco.banking.enums.InterestRunStatus;
 import com.sacco.banking.enums.NotificationType;
 import com.sacco.banking.exception.BadRequestException;
 import com.sacco.banking.repository.AccountRepository;
 import com.sacco.banking.repository.MemberRepository;
+import com.sacco.banking.util.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,6 +39,10 @@ public class AccountService {
     private final AccountRepository accountRepository;
     private final MemberRepository memberRepository;
     private final NotificationHelper notificationHelper;
+    private final IdGenerator idGenerator;
+    private final AccountDirectory accountDirectory;
+    private final InterestPostingService interestPostingService;
+    private final BalanceMutationService balanceMutationService;
 
     @Transactional
     public AccountResponse createAccount(String memberNumber, CreateAccountRequest request) {
@@ -59,6 +66,7 @@ public class AccountService {
                 .build();
 
         account = accountRepository.save(account);
+        accountDirectory.register(account);
         notificationHelper.notifyAccountCreated(memberNumber, request.getAccountType().name());
 
         log.info("Created {} account {} for member {}", request.getAccountType(), account.getAccountNumber(), memberNumber);
@@ -95,6 +103,7 @@ public class AccountService {
         account.setStatus(status);
         account.setUpdatedDate(LocalDateTime.now());
         account = accountRepository.save(account);
+        accountDirectory.register(account);
 
         sendStatusChangeNotification(memberNumber, account, oldStatus, status, reason);
 
@@ -117,6 +126,7 @@ public class AccountService {
         account.setClosedDate(LocalDateTime.now());
         account.setUpdatedDate(LocalDateTime.now());
         accountRepository.save(account);
+        accountDirectory.register(account);
 
         notificationHelper.notifyAccountNotification(memberNumber, account.getAccountType().name(),
                 String.format("Your %s account (%s) has been closed. Reason: %s",
@@ -148,44 +158,29 @@ public class AccountService {
                 .map(AccountResponse::fromEntity);
     }
 
-    @Scheduled(cron = "0 0 9 * * ?")
-    public void checkLowBalances() {
-        List<Account> accounts = accountRepository.findByStatus(AccountStatus.ACTIVE);
-
-        accounts.stream().filter(account -> {
-            BigDecimal threshold = account.getMinimumBalance().multiply(BigDecimal.valueOf(1.1));
-            return account.getBalance().compareTo(threshold) <= 0 &&
-                    account.getBalance().compareTo(account.getMinimumBalance()) > 0;
-        }).forEach(account -> notificationHelper.notifyLowBalance(
-                account.getMember().getMemberNumber(),
-                account.getAccountType().name(),
-                account.getBalance().doubleValue()));
-
-        log.info("Completed low balance check for {} accounts", accounts.size());
+    /**
+     * @return number of low-balance alerts sent
+     */
+    public int checkLowBalances() {
+        // Debits alert as they cross the threshold; this only catches what they could not see
+        int alerted = balanceMutationService.sweepLowBalanceAlerts();
+        log.info("Completed low balance sweep: {} alerts", alerted);
+        return alerted;
     }
 
-    @Scheduled(cron = "0 0 0 1 * ?")
-    public void calculateMonthlyInterest() {
-        List<Account> accounts = accountRepository.findByAccountTypeAndStatus(AccountType.SAVINGS, AccountStatus.ACTIVE);
-
-        accounts.stream().filter(account -> account.getBalance().compareTo(BigDecimal.ZERO) > 0)
-                .forEach(account -> {
-                    BigDecimal monthlyRate = account.getInterestRate().divide(BigDecimal.valueOf(12), 6, BigDecimal.ROUND_HALF_UP);
-                    BigDecimal interest = account.getBalance().multiply(monthlyRate);
-                    account.setBalance(account.getBalance().add(interest));
-                    account.setUpdatedDate(LocalDateTime.now());
-                    accountRepository.save(account);
-
-                    notificationHelper.notifySystemNotification(
-                            account.getMember().getMemberNumber(),
-                            "Interest Added",
-                            String.format("Monthly interest of KSH %.2f has been added to your %s account. New balance: KSH %.2f",
-                                    interest.doubleValue(), account.getAccountType().name(), account.getBalance().doubleValue()),
-                            NotificationType.SUCCESS,
-                            1);
-                });
-
-        log.info("Calculated monthly interest for {} savings accounts", accounts.size());
+    /**
+     * @return number of accounts paid interest for the month
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int calculateMonthlyInterest(YearMonth period) {
+        // Chunks commit on their own, so a restart resumes the month instead of posting it again
+        InterestRun run = interestPostingService.post(period);
+        if (run.getStatus() != InterestRunStatus.COMPLETED) {
+            // Fails the job run; the pending chunks are finished by InterestPostingService.joinRunning
+            throw new IllegalStateException("Interest run for " + period + " did not complete: a chunk failed or "
+                    + "other nodes did not finish theirs in time; the pending chunks are retried by the next join");
+        }
+        return run.getAccountsPosted() != null ? run.getAccountsPosted() : 0;
     }
 
     private void sendStatusChangeNotification(String memberNumber, Account account, AccountStatus oldStatus, AccountStatus newStatus, String reason) {
@@ -249,9 +244,7 @@ public class AccountService {
             case LOAN -> "LOA";
         };
 
-        String timestamp = String.valueOf(System.currentTimeMillis()).substring(8);
-        String random = String.format("%03d", (int) (Math.random() * 1000));
-        return prefix + timestamp + random;
+        return idGenerator.nextAccountNumber(prefix);
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,9 @@
+package com.sacco.banking.service;
+
+import java.util.Collection;
+
+/**
+ * Published when balances or details of accounts change; listeners act after the change commits
+ */
+public record AccountsChangedEvent(Collection<Long> accountIds) {
+}
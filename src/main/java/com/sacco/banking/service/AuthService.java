@@ -15,6 +15,8 @@ import com.sacco.banking.repository.AccountRepository;
 import com.sacco.banking.repository.MemberRepository;
 import com.sacco.banking.repository.RoleRepository;
 import com.sacco.banking.security.JwtTokenProvider;
+import com.sacco.banking.util.IdGenerator;
+import com.sacco.banking.util.MemberNumberGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -30,7 +32,6 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -44,6 +45,9 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider tokenProvider;
     private final NotificationHelper notificationHelper;
+    private final IdGenerator idGenerator;
+    private final MemberNumberGenerator memberNumberGenerator;
+    private final AccountDirectory accountDirectory;
 
     // Admin domain whitelist - only these domains can register as admin
     @Value("${app.admin.allowed-domains:admin.sacco.com,board.sacco.com}")
@@ -114,7 +118,7 @@ public class AuthService {
         }
 
         // Generate member number
-        String memberNumber = generateMemberNumber(isAdminRegistration);
+        String memberNumber = memberNumberGenerator.generateMemberNumber(isAdminRegistration);
 
         Member member = new Member();
         member.setMemberNumber(memberNumber);
@@ -212,49 +216,23 @@ public class AuthService {
         }
     }
 
-    private String generateMemberNumber(boolean isAdmin) {
-        String prefix = isAdmin ? "ADM" : "MB";
-        long count;
-
-        if (isAdmin) {
-            // Count existing admin members
-            count = memberRepository.count(); // You might want to create a method to count only admins
-        } else {
-            // Count existing regular members
-            count = memberRepository.count();
-        }
-
-        // Format: ADM001, ADM002... or MB001, MB002...
-        String number = String.format("%03d", count + 1);
-        String memberNumber = prefix + number;
-
-        // Ensure uniqueness (in case of concurrent registrations)
-        while (memberRepository.existsByMemberNumber(memberNumber)) {
-            count++;
-            number = String.format("%03d", count + 1);
-            memberNumber = prefix + number;
-        }
-
-        return memberNumber;
-    }
-
     private void createDefaultAccounts(Member member) {
         // Savings Account
         Account savingsAccount = createAccount(member, AccountType.SAVINGS, "SAV",
                 new BigDecimal("1000"), new BigDecimal("0.05"));
-        accountRepository.save(savingsAccount);
+        accountDirectory.register(accountRepository.save(savingsAccount));
         notificationHelper.notifyAccountCreated(member.getMemberNumber(), "SAVINGS");
 
         // Current Account
         Account currentAccount = createAccount(member, AccountType.CURRENT, "CUR",
                 BigDecimal.ZERO, BigDecimal.ZERO);
-        accountRepository.save(currentAccount);
+        accountDirectory.register(accountRepository.save(currentAccount));
         notificationHelper.notifyAccountCreated(member.getMemberNumber(), "CURRENT");
 
         // Share Capital Account
         Account shareCapitalAccount = createAccount(member, AccountType.SHARE_CAPITAL, "SHR",
                 new BigDecimal("5000"), new BigDecimal("0.08"));
-        accountRepository.save(shareCapitalAccount);
+        accountDirectory.register(accountRepository.save(shareCapitalAccount));
         notificationHelper.notifyAccountCreated(member.getMemberNumber(), "SHARE_CAPITAL");
 
         log.info("Created default accounts for member {}", member.getMemberNumber());
@@ -264,7 +242,7 @@ public class AuthService {
         // Admins get only basic accounts
         Account currentAccount = createAccount(member, AccountType.CURRENT, "CUR",
                 BigDecimal.ZERO, BigDecimal.ZERO);
-        accountRepository.save(currentAccount);
+        accountDirectory.register(accountRepository.save(currentAccount));
         notificationHelper.notifyAccountCreated(member.getMemberNumber(), "CURRENT");
 
         log.info("Created admin account for {}", member.getMemberNumber());
@@ -273,7 +251,7 @@ public class AuthService {
     private Account createAccount(Member member, AccountType type, String prefix,
                                   BigDecimal minBalance, BigDecimal interestRate) {
         Account account = new Account();
-        account.setAccountNumber(generateAccountNumber(prefix));
+        account.setAccountNumber(idGenerator.nextAccountNumber(prefix));
         account.setAccountType(type);
         account.setBalance(BigDecimal.ZERO);
         account.setMinimumBalance(minBalance);
@@ -285,11 +263,6 @@ public class AuthService {
         return account;
     }
 
-    private String generateAccountNumber(String prefix) {
-        return prefix + "-" + System.currentTimeMillis() + "-" +
-                UUID.randomUUID().toString().substring(0, 6).toUpperCase();
-    }
-
     // Rest of the methods remain the same...
     @Transactional
     public void changePassword(String memberNumber, String oldPassword, String newPassword) {
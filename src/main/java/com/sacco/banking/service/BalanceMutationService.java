@@ -0,0 +1,310 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Single entry point for changing account balances.
+ * Every mutation is one guarded, set-based UPDATE, so there is no read-check-write
+ * window in Java and concurrent requests on the same account cannot lose updates.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceMutationService {
+
+    // Balance after the change lies in the low band: at most 10% above the minimum, but not below it
+    private static final String LOW_BAND =
+            "%1$s <= COALESCE(a.minimum_balance, 0) * 1.1 AND %1$s > COALESCE(a.minimum_balance, 0)";
+
+    // The debit that moves the balance into the low band claims the account's alert, once
+    private static final String DEBIT_SQL =
+            "UPDATE accounts a SET balance = a.balance - :amount, updated_date = :now, " +
+            "low_balance_alerted_at = CASE WHEN :alerts AND a.low_balance_alerted_at IS NULL AND a.status = 'ACTIVE' AND " +
+            String.format(LOW_BAND, "a.balance - :amount") + " THEN :now ELSE a.low_balance_alerted_at END " +
+            "WHERE a.id = :accountId AND a.balance - :amount >= %s " +
+            "RETURNING CASE WHEN a.low_balance_alerted_at = :now " +
+            "THEN (SELECT m.member_number FROM members m WHERE m.id = a.member_id) END AS alert_member_number, " +
+            "a.account_type, a.balance";
+
+    private static final String DEBIT_IF_SUFFICIENT_SQL = String.format(DEBIT_SQL, "0");
+    private static final String DEBIT_ABOVE_MINIMUM_SQL = String.format(DEBIT_SQL, "COALESCE(a.minimum_balance, 0)");
+
+    // Debit and dependent credit in one statement: the credit only applies when the guarded debit did
+    private static final String TRANSFER_SQL =
+            "WITH debited AS (" +
+            "  UPDATE accounts a SET balance = a.balance - v.amount, updated_date = v.now, " +
+            "  low_balance_alerted_at = CASE WHEN v.alerts AND a.low_balance_alerted_at IS NULL AND a.status = 'ACTIVE' AND " +
+            String.format(LOW_BAND, "a.balance - v.amount") + " THEN v.now ELSE a.low_balance_alerted_at END " +
+            "  FROM (SELECT ?::numeric AS amount, ?::timestamp AS now, ?::boolean AS alerts) v " +
+            "  WHERE a.id = ? AND a.balance - v.amount >= 0 RETURNING a.id" +
+            ") " +
+            "UPDATE accounts a SET balance = a.balance + v.amount, updated_date = v.now, " +
+            "low_balance_alerted_at = CASE WHEN a.balance + v.amount > COALESCE(a.minimum_balance, 0) * 1.1 " +
+            "THEN NULL ELSE a.low_balance_alerted_at END " +
+            "FROM (SELECT ?::numeric AS amount, ?::timestamp AS now) v " +
+            "WHERE a.id = ? AND EXISTS (SELECT 1 FROM debited)";
+
+    // Rows locked lowest id first, so movements between the same accounts in opposite directions queue
+    // instead of deadlocking; interest posting locks its ranges in the same order
+    private static final String LOCK_SQL = "SELECT id FROM accounts WHERE id IN (:accountIds) ORDER BY id FOR UPDATE";
+
+    // Sources of a batch whose debits claimed an alert
+    private static final String ALERTED_SQL =
+            "SELECT m.member_number AS alert_member_number, a.account_type, a.balance FROM accounts a " +
+            "JOIN members m ON m.id = a.member_id WHERE a.id IN (:accountIds) AND a.low_balance_alerted_at = :now";
+
+    // Missed cases: recovered balances re-arm, low ones that were never alerted are alerted now
+    private static final String SWEEP_RECOVERED_SQL =
+            "UPDATE accounts a SET low_balance_alerted_at = NULL WHERE a.low_balance_alerted_at IS NOT NULL " +
+            "AND a.balance + COALESCE((SELECT SUM(s.amount) FROM account_balance_slots s WHERE s.account_id = a.id), 0) " +
+            "> COALESCE(a.minimum_balance, 0) * 1.1";
+
+    private static final String SWEEP_LOW_SQL =
+            "WITH alerted AS (" +
+            "  UPDATE accounts a SET low_balance_alerted_at = :now WHERE a.low_balance_alerted_at IS NULL " +
+            "  AND a.status = 'ACTIVE' AND a.id NOT IN (:shardedAccountIds) AND " + String.format(LOW_BAND, "a.balance") +
+            "  RETURNING a.member_id, a.account_type, a.balance" +
+            ") " +
+            "SELECT m.member_number AS alert_member_number, al.account_type, al.balance FROM alerted al " +
+            "JOIN members m ON m.id = al.member_id";
+
+    private static final RowMapper<LowBalance> LOW_BALANCE_MAPPER = (rs, rowNum) -> new LowBalance(
+            rs.getString("alert_member_number"), rs.getString("account_type"), rs.getBigDecimal("balance"));
+
+    private final AccountRepository accountRepository;
+    private final HotAccountService hotAccountService;
+    private final NotificationHelper notificationHelper;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Lowest balance a debit is allowed to leave behind
+     */
+    public enum Floor {
+        ZERO,
+        MINIMUM_BALANCE
+    }
+
+    /**
+     * Debit the account only if the resulting balance does not drop below the floor.
+     *
+     * @return number of rows affected: 1 when applied, 0 when funds were insufficient
+     */
+    @Transactional
+    public int debit(Long accountId, BigDecimal amount, Floor floor) {
+        validateAmount(amount);
+
+        int updated = guardedDebit(accountId, amount, floor);
+        if (updated == 0 && hotAccountService.isSharded(accountId) && hotAccountService.compact(accountId)) {
+            // Part of a hot account's balance may still sit in its slots
+            updated = guardedDebit(accountId, amount, floor);
+        }
+
+        log.debug("Debit of {} on account {} (floor {}) affected {} row(s)", amount, accountId, floor, updated);
+        return updated;
+    }
+
+    @Transactional
+    public int debit(Long accountId, BigDecimal amount) {
+        return debit(accountId, amount, Floor.ZERO);
+    }
+
+    /**
+     * Credit the account. Credits are unconditional, so a miss means the account does not exist.
+     * Credits to hot accounts land on one of their balance slots instead of the account row.
+     */
+    @Transactional
+    public int credit(Long accountId, BigDecimal amount) {
+        validateAmount(amount);
+
+        if (hotAccountService.isSharded(accountId)) {
+            hotAccountService.creditSlot(accountId, amount);
+            log.debug("Credit of {} on hot account {} parked on a balance slot", amount, accountId);
+            return 1;
+        }
+
+        int updated = accountRepository.credit(accountId, amount, LocalDateTime.now());
+        if (updated == 0) {
+            throw new BadRequestException("Account not found");
+        }
+
+        log.debug("Credit of {} on account {} affected {} row(s)", amount, accountId, updated);
+        return updated;
+    }
+
+    /**
+     * Lock the account rows a debit and its paired credit will update, lowest id first. Call before
+     * the guarded updates; either id may be null. A credit to a hot account lands on a slot and
+     * leaves the account row alone, so it is not locked.
+     */
+    @Transactional
+    public void lockInOrder(Long debitedAccountId, Long creditedAccountId) {
+        Set<Long> accountIds = new TreeSet<>();
+        if (debitedAccountId != null) {
+            accountIds.add(debitedAccountId);
+        }
+        if (creditedAccountId != null && !hotAccountService.isSharded(creditedAccountId)) {
+            accountIds.add(creditedAccountId);
+        }
+        lockRows(accountIds);
+    }
+
+    /**
+     * Apply many account-to-account movements as JDBC batches. Each movement is a single
+     * guarded statement, so items succeed or fail independently and in order. Movements touching
+     * a hot account go through {@link #debit} and {@link #credit} instead, which know its slots.
+     *
+     * @return affected rows per movement: 1 when applied, 0 when the source could not cover it
+     */
+    @Transactional
+    public int[] transferAll(List<Movement> movements) {
+        Set<Long> accountIds = new TreeSet<>();
+        movements.forEach(movement -> {
+            validateAmount(movement.getDebitAmount());
+            validateAmount(movement.getCreditAmount());
+            accountIds.add(movement.getFromAccountId());
+            if (!hotAccountService.isSharded(movement.getToAccountId())) {
+                accountIds.add(movement.getToAccountId());
+            }
+        });
+        // Every row the batch updates is locked up front, in id order, not in the order of its items
+        lockRows(accountIds);
+
+        int[] applied = new int[movements.size()];
+        List<Movement> batch = new ArrayList<>();
+        int batchStart = 0;
+        for (int i = 0; i < movements.size(); i++) {
+            Movement movement = movements.get(i);
+            if (!hotAccountService.isSharded(movement.getFromAccountId())
+                    && !hotAccountService.isSharded(movement.getToAccountId())) {
+                if (batch.isEmpty()) {
+                    batchStart = i;
+                }
+                batch.add(movement);
+                continue;
+            }
+
+            // Keep the order: earlier movements may fund this one
+            applyBatch(batch, applied, batchStart);
+            batch.clear();
+            applied[i] = debit(movement.getFromAccountId(), movement.getDebitAmount());
+            if (applied[i] == 1) {
+                credit(movement.getToAccountId(), movement.getCreditAmount());
+            }
+        }
+        applyBatch(batch, applied, batchStart);
+
+        log.debug("Applied {} balance movements", movements.size());
+        return applied;
+    }
+
+    private void applyBatch(List<Movement> batch, int[] applied, int offset) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        int[][] counts = jdbcTemplate.batchUpdate(TRANSFER_SQL, batch, batch.size(), (ps, movement) -> {
+            ps.setBigDecimal(1, movement.getDebitAmount());
+            ps.setTimestamp(2, now);
+            ps.setBoolean(3, true);
+            ps.setLong(4, movement.getFromAccountId());
+            ps.setBigDecimal(5, movement.getCreditAmount());
+            ps.setTimestamp(6, now);
+            ps.setLong(7, movement.getToAccountId());
+        });
+        System.arraycopy(counts[0], 0, applied, offset, batch.size());
+
+        Set<Long> sourceIds = batch.stream().map(Movement::getFromAccountId).collect(Collectors.toSet());
+        namedParameterJdbcTemplate.query(ALERTED_SQL,
+                        new MapSqlParameterSource("accountIds", sourceIds).addValue("now", now), LOW_BALANCE_MAPPER)
+                .forEach(this::alert);
+    }
+
+    private void lockRows(Set<Long> accountIds) {
+        // A single row is locked by its own guarded update
+        if (accountIds.size() > 1) {
+            namedParameterJdbcTemplate.queryForList(LOCK_SQL, new MapSqlParameterSource("accountIds", accountIds), Long.class);
+        }
+    }
+
+    /**
+     * Debit of the source (amount plus fee) paired with the credit of the destination
+     */
+    @Value
+    public static class Movement {
+        Long fromAccountId;
+        Long toAccountId;
+        BigDecimal debitAmount;
+        BigDecimal creditAmount;
+    }
+
+    /**
+     * Daily catch-up for what the debit path cannot see: credits parked on balance slots and
+     * reversals re-arm recovered accounts here, and accounts that entered the low band without a
+     * guarded debit are alerted.
+     *
+     * @return number of alerts sent
+     */
+    @Transactional
+    public int sweepLowBalanceAlerts() {
+        jdbcTemplate.update(SWEEP_RECOVERED_SQL);
+
+        Set<Long> sharded = hotAccountService.getShardedAccountIds();
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)))
+                // An empty IN list is not valid SQL; no account has id 0
+                .addValue("shardedAccountIds", sharded.isEmpty() ? Set.of(0L) : sharded);
+        List<LowBalance> alerted = namedParameterJdbcTemplate.query(SWEEP_LOW_SQL, parameters, LOW_BALANCE_MAPPER);
+        alerted.forEach(this::alert);
+        return alerted.size();
+    }
+
+    private int guardedDebit(Long accountId, BigDecimal amount, Floor floor) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("accountId", accountId)
+                .addValue("amount", amount)
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)))
+                // Hot accounts are pools, not member savings; their balance also lives in slots
+                .addValue("alerts", !hotAccountService.isSharded(accountId));
+        List<LowBalance> debited = namedParameterJdbcTemplate.query(
+                floor == Floor.MINIMUM_BALANCE ? DEBIT_ABOVE_MINIMUM_SQL : DEBIT_IF_SUFFICIENT_SQL,
+                parameters, LOW_BALANCE_MAPPER);
+        debited.stream().filter(low -> low.memberNumber() != null).forEach(this::alert);
+        return debited.size();
+    }
+
+    private void alert(LowBalance low) {
+        notificationHelper.notifyLowBalance(low.memberNumber(), low.accountType(), low.balance().doubleValue());
+    }
+
+    // Member number is null when the row did not claim an alert
+    private record LowBalance(String memberNumber, String accountType, BigDecimal balance) {
+    }
+
+    private void validateAmount(BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) < 0) {
+            throw new BadRequestException("Invalid amount");
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.dto.request.TransferRequest;
+import com.sacco.banking.dto.response.BatchTransferItemResult;
+import com.sacco.banking.dto.response.BatchTransferResponse;
+import com.sacco.banking.entity.Member;
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.enums.TransactionStatus;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.exception.PartiallyCommittedException;
+import com.sacco.banking.repository.AccountRepository;
+import com.sacco.banking.util.IdGenerator;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Posts large sets of internal transfers (payroll, dividend runs) in chunks.
+ * Each chunk resolves its accounts from the account directory, computes fees in a single pass
+ * and posts through one JDBC batch, while every item still gets its own result.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchTransferService {
+
+    private static final String COMPLETED = "COMPLETED";
+    private static final String FAILED = "FAILED";
+
+    private final AccountRepository accountRepository;
+    private final AccountDirectory accountDirectory;
+    private final FeeCalculationService feeCalculationService;
+    private final LedgerService ledgerService;
+    private final TransactionLimitService transactionLimitService;
+    private final IdGenerator idGenerator;
+    private final Validator validator;
+    private final EntityManager entityManager;
+
+    @Value("${transfers.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${transfers.batch.max-items:50000}")
+    private int maxItems;
+
+    public BatchTransferResponse processBatch(List<TransferRequest> requests, Member member) {
+        if (requests.size() > maxItems) {
+            throw new BadRequestException("A batch may contain at most " + maxItems + " transfers");
+        }
+        return processBatch(requests.iterator(), member);
+    }
+
+    /**
+     * Process transfers as they are read, so streamed (NDJSON) input is never fully buffered.
+     * Each chunk commits on its own; a failed item never rolls back the others. A failure after
+     * some transfers were posted is raised as a {@link PartiallyCommittedException}.
+     */
+    public BatchTransferResponse processBatch(Iterator<TransferRequest> requests, Member member) {
+        List<BatchTransferItemResult> results = new ArrayList<>();
+        try {
+            return processBatch(requests, member, results);
+        } catch (RuntimeException e) {
+            long posted = results.stream().filter(result -> COMPLETED.equals(result.getStatus())).count();
+            if (posted == 0) {
+                throw e;
+            }
+            throw new PartiallyCommittedException(String.format(
+                    "Batch stopped after %d transfers were posted; contact support before retrying", posted), e);
+        }
+    }
+
+    private BatchTransferResponse processBatch(Iterator<TransferRequest> requests, Member member,
+                                               List<BatchTransferItemResult> results) {
+        List<TransferRequest> chunk = new ArrayList<>(chunkSize);
+        String stopReason = null;
+        int index = 0;
+
+        while (true) {
+            TransferRequest request;
+            try {
+                if (!requests.hasNext()) {
+                    break;
+                }
+                request = requests.next();
+            } catch (RuntimeException e) {
+                // Malformed input part-way through a stream: keep what was read, report where it stopped
+                log.warn("Batch transfer input unreadable at item {}: {}", index, e.getMessage());
+                stopReason = "Unreadable transfer: " + e.getMessage();
+                break;
+            }
+
+            if (index == maxItems) {
+                stopReason = "Batch limit of " + maxItems + " transfers reached; remaining transfers were not read";
+                break;
+            }
+
+            chunk.add(request);
+            index++;
+            if (chunk.size() == chunkSize) {
+                results.addAll(processChunk(chunk, index - chunk.size(), member));
+                chunk.clear();
+            }
+        }
+
+        results.addAll(processChunk(chunk, index - chunk.size(), member));
+        if (stopReason != null) {
+            results.add(failure(index, null, stopReason));
+        }
+
+        int succeeded = (int) results.stream().filter(result -> COMPLETED.equals(result.getStatus())).count();
+        log.info("Batch transfer for member {}: {} of {} transfers completed",
+                member.getMemberNumber(), succeeded, results.size());
+
+        return BatchTransferResponse.builder()
+                .total(results.size())
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .results(results)
+                .build();
+    }
+
+    private List<BatchTransferItemResult> processChunk(List<TransferRequest> chunk, int offset, Member member) {
+        if (chunk.isEmpty()) {
+            return List.of();
+        }
+
+        // Resolve every referenced account up front; known accounts come from memory
+        Map<String, AccountDirectory.AccountInfo> accounts = new HashMap<>();
+        for (TransferRequest request : chunk) {
+            if (request != null) {
+                resolve(request.getFromAccountNumber(), accounts);
+                resolve(request.getToAccountNumber(), accounts);
+            }
+        }
+
+        BatchTransferItemResult[] results = new BatchTransferItemResult[chunk.size()];
+        List<Transaction> pending = new ArrayList<>(chunk.size());
+        List<Integer> pendingPositions = new ArrayList<>(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            TransferRequest request = chunk.get(i);
+            String error = validate(request, accounts, member);
+            if (error != null) {
+                results[i] = failure(offset + i, request, error);
+                continue;
+            }
+            try {
+                // Committed on its own; given back below if the transfer is not posted
+                transactionLimitService.reserve(member, TransactionType.TRANSFER_INTERNAL, request.getAmount());
+            } catch (BadRequestException e) {
+                results[i] = failure(offset + i, request, e.getMessage());
+                continue;
+            }
+
+            BigDecimal fee = feeCalculationService.calculateInternalTransferFee(request.getAmount());
+            pending.add(buildTransaction(request, fee, accounts));
+            pendingPositions.add(i);
+        }
+
+        LocalDateTime reservedAt = LocalDateTime.now();
+        Set<Transaction> posted = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            if (!pending.isEmpty()) {
+                posted.addAll(ledgerService.postAll(pending));
+            }
+        } finally {
+            for (Transaction transaction : pending) {
+                if (!posted.contains(transaction)) {
+                    transactionLimitService.release(member.getId(), TransactionType.TRANSFER_INTERNAL,
+                            transaction.getAmount(), reservedAt);
+                }
+            }
+        }
+
+        for (int p = 0; p < pending.size(); p++) {
+            Transaction transaction = pending.get(p);
+            int position = pendingPositions.get(p);
+            results[position] = posted.contains(transaction)
+                    ? success(offset + position, transaction, chunk.get(position))
+                    : failure(offset + position, chunk.get(position), "Insufficient funds");
+        }
+
+        // Keep the persistence context from growing with every chunk of a long run
+        entityManager.clear();
+
+        return Arrays.asList(results);
+    }
+
+    private void resolve(String accountNumber, Map<String, AccountDirectory.AccountInfo> accounts) {
+        if (accountNumber != null && !accounts.containsKey(accountNumber)) {
+            accountDirectory.find(accountNumber).ifPresent(info -> accounts.put(accountNumber, info));
+        }
+    }
+
+    private String validate(TransferRequest request, Map<String, AccountDirectory.AccountInfo> accounts, Member member) {
+        if (request == null) {
+            return "Transfer is empty";
+        }
+
+        Set<ConstraintViolation<TransferRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; "));
+        }
+
+        AccountDirectory.AccountInfo fromAccount = accounts.get(request.getFromAccountNumber());
+        AccountDirectory.AccountInfo toAccount = accounts.get(request.getToAccountNumber());
+        if (fromAccount == null) {
+            return "From account not found";
+        }
+        if (toAccount == null) {
+            return "To account not found";
+        }
+        if (request.getFromAccountNumber().equals(request.getToAccountNumber())) {
+            return "Source and destination accounts must differ";
+        }
+        if (!fromAccount.isOwnedBy(member)) {
+            return "You don't own the source account";
+        }
+        if (!fromAccount.isActive()) {
+            return "Source account is not active";
+        }
+        if (!toAccount.isActive()) {
+            return "Destination account is not active";
+        }
+        return null;
+    }
+
+    private Transaction buildTransaction(TransferRequest request, BigDecimal fee, Map<String, AccountDirectory.AccountInfo> accounts) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(idGenerator.nextTransactionId("TXN"));
+        transaction.setTransactionType(TransactionType.TRANSFER_INTERNAL);
+        transaction.setAmount(request.getAmount());
+        transaction.setFee(fee);
+        transaction.setDescription(request.getDescription());
+        transaction.setReference(request.getReference());
+        transaction.setFromAccount(accountRepository.getReferenceById(accounts.get(request.getFromAccountNumber()).getId()));
+        transaction.setToAccount(accountRepository.getReferenceById(accounts.get(request.getToAccountNumber()).getId()));
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        return transaction;
+    }
+
+    private BatchTransferItemResult success(int index, Transaction transaction, TransferRequest request) {
+        return BatchTransferItemResult.builder()
+                .index(index)
+                .status(COMPLETED)
+                .transactionId(transaction.getTransactionId())
+                .fromAccountNumber(request.getFromAccountNumber())
+                .toAccountNumber(request.getToAccountNumber())
+                .amount(transaction.getAmount())
+                .fee(transaction.getFee())
+                .build();
+    }
+
+    private BatchTransferItemResult failure(int index, TransferRequest request, String message) {
+        return BatchTransferItemResult.builder()
+                .index(index)
+                .status(FAILED)
+                .fromAccountNumber(request != null ? request.getFromAccountNumber() : null)
+                .toAccountNumber(request != null ? request.getToAccountNumber() : null)
+                .amount(request != null ? request.getAmount() : null)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.sacco.banking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sacco.banking.dto.response.DashboardResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Serialized dashboards per member with a strong ETag over the JSON bytes. An entry is served only
+ * while the member's accounts are at the version it was built from, read from the database on every
+ * request, so a change committed on any node is seen at once; entries otherwise expire after a short
+ * TTL, which covers changes that do not go through an account, such as profile or role updates.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardCache {
+
+    // Every balance change and transfer outcome touches the updated_date of the accounts involved
+    private static final String VERSION_SQL = "SELECT MAX(updated_date) FROM accounts WHERE member_id = ?";
+
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${dashboard.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The member's cached dashboard, built and cached with the loader when missing, expired or
+     * built from an older version of the member's accounts
+     */
+    public Entry get(Long memberId, Supplier<DashboardResponse> loader) {
+        // Read before the loader, so a dashboard is never cached under a newer version than its data
+        Timestamp version = jdbcTemplate.queryForObject(VERSION_SQL, Timestamp.class, memberId);
+        Entry cached = entries.get(memberId);
+        if (cached != null && !cached.isExpired() && Objects.equals(cached.version(), version)) {
+            return cached;
+        }
+
+        Entry fresh = serialize(loader.get(), version);
+        entries.put(memberId, fresh);
+        return fresh;
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.cache.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        entries.values().removeIf(Entry::isExpired);
+    }
+
+    private Entry serialize(DashboardResponse dashboard, Timestamp version) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(dashboard);
+            return new Entry(body, etagOf(body), version, System.currentTimeMillis() + ttlSeconds * 1000);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize dashboard", e);
+        }
+    }
+
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Dashboard JSON, its strong ETag (quoted) and the version of the member's accounts it shows
+     */
+    public record Entry(byte[] body, String etag, Timestamp version, long expiresAtMillis) {
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAtMillis;
+        }
+    }
+}
@@ -11,9 +11,11 @@ import com.sacco.banking.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,9 +23,16 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DashboardService {
 
+    private static final int RECENT_TRANSACTIONS = 10;
+
+    // Recent transactions are looked for in the latest partitions first
+    private static final int RECENT_WINDOW_DAYS = 90;
+
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final MemberStatsService memberStatsService;
 
+    @Transactional(readOnly = true)
     public DashboardResponse getDashboardData(Member member) {
         List<Account> accounts = accountRepository.findByMember(member);
 
@@ -32,13 +41,11 @@ public class DashboardService {
                 .map(AccountSummaryResponse::fromEntity)
                 .collect(Collectors.toList());
 
-        // Recent transactions (last 10)
-        List<TransactionResponse> recentTransactions = accounts.stream()
-                .flatMap(account -> transactionRepository
-                        .findTransactionsByAccount(account, PageRequest.of(0, 10))
-                        .getContent().stream())
-                .map(TransactionResponse::fromEntity)
-                .limit(10)
+        // Recent transactions (last 10) across all accounts, newest first
+        List<Long> accountIds = accounts.stream().map(Account::getId).toList();
+        List<TransactionResponse> recentTransactions = accountIds.isEmpty() ? List.of() : findRecent(accountIds)
+                .stream()
+                .map(row -> TransactionResponse.fromEntity((Transaction) row[0], (String) row[1], (String) row[2]))
                 .collect(Collectors.toList());
 
         // Calculate totals
@@ -46,20 +53,10 @@ public class DashboardService {
                 .map(Account::getBalance)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-        // Calculate monthly income and expenses
-        LocalDateTime monthStart = LocalDateTime.now().withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
-        List<Transaction> monthlyTransactions = transactionRepository
-                .findTransactionsByAccountsAndDateRange(accounts, monthStart, LocalDateTime.now());
-
-        BigDecimal monthlyIncome = monthlyTransactions.stream()
-                .filter(t -> accounts.contains(t.getToAccount()))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal monthlyExpenses = monthlyTransactions.stream()
-                .filter(t -> accounts.contains(t.getFromAccount()))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Monthly income and expenses from the maintained rollup
+        BigDecimal[] monthlyTotals = memberStatsService.getMonthlyTotals(member.getId(), YearMonth.now());
+        BigDecimal monthlyIncome = monthlyTotals[0];
+        BigDecimal monthlyExpenses = monthlyTotals[1];
 
         return DashboardResponse.builder()
                 .memberName(member.getFirstName() + " " + member.getLastName())
@@ -78,4 +75,15 @@ public class DashboardService {
                 )
                 .build();
     }
-}
\ No newline at end of file
+
+    // Only quiet accounts fall back to searching their whole history
+    private List<Object[]> findRecent(List<Long> accountIds) {
+        PageRequest page = PageRequest.of(0, RECENT_TRANSACTIONS);
+        List<Object[]> recent = transactionRepository.findRecentByAccountIds(accountIds,
+                LocalDateTime.now().minusDays(RECENT_WINDOW_DAYS), page);
+        if (recent.size() < RECENT_TRANSACTIONS) {
+            recent = transactionRepository.findRecentByAccountIds(accountIds, LocalDateTime.of(1970, 1, 1, 0, 0), page);
+        }
+        return recent;
+    }
+}
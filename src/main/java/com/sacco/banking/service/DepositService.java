@@ -7,9 +7,9 @@ import com.sacco.banking.entity.Member;
 import com.sacco.banking.entity.Transaction;
 import com.sacco.banking.enums.TransactionStatus;
 import com.sacco.banking.enums.TransactionType;
-import com.sacco.banking.exception.InsufficientFundsException;
+import com.sacco.banking.exception.BadRequestException;
 import com.sacco.banking.repository.AccountRepository;
-import com.sacco.banking.repository.TransactionRepository;
+import com.sacco.banking.util.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -23,7 +23,9 @@ import java.math.BigDecimal;
 public class DepositService {
 
     private final AccountRepository accountRepository;
-    private final TransactionRepository transactionRepository;
+    private final AccountDirectory accountDirectory;
+    private final LedgerService ledgerService;
+    private final IdGenerator idGenerator;
 
     @Transactional
     public TransactionResponse processCashDeposit(DepositRequest request, Member member) {
@@ -34,7 +36,7 @@ public class DepositService {
                 request.getDescription() != null ? request.getDescription() : "Cash deposit",
                 request.getReference());
 
-        return mapToTransactionResponse(transaction);
+        return mapToTransactionResponse(transaction, null, request.getToAccountNumber());
     }
 
     @Transactional
@@ -46,7 +48,7 @@ public class DepositService {
                 request.getDescription() != null ? request.getDescription() : "M-Pesa deposit",
                 request.getReference());
 
-        return mapToTransactionResponse(transaction);
+        return mapToTransactionResponse(transaction, null, request.getToAccountNumber());
     }
 
     @Transactional
@@ -56,24 +58,15 @@ public class DepositService {
         Account fromAccount = getMemberAccount(member, request.getFromAccountNumber());
         Account toAccount = getMemberAccount(member, request.getToAccountNumber());
 
-        if (fromAccount.getBalance().compareTo(request.getAmount()) < 0) {
-            throw new InsufficientFundsException("Insufficient funds in source account");
-        }
-
-        fromAccount.setBalance(fromAccount.getBalance().subtract(request.getAmount()));
-        toAccount.setBalance(toAccount.getBalance().add(request.getAmount()));
-
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
-
         Transaction transaction = createTransaction(toAccount, request.getAmount(), TransactionType.TRANSFER,
                 request.getDescription() != null ? request.getDescription() : "Account Transfer",
                 request.getReference());
 
         transaction.setFromAccount(fromAccount);
-        transactionRepository.save(transaction);
+        transaction = ledgerService.post(transaction, BalanceMutationService.Floor.ZERO,
+                "Insufficient funds in source account");
 
-        return mapToTransactionResponse(transaction);
+        return mapToTransactionResponse(transaction, request.getFromAccountNumber(), request.getToAccountNumber());
     }
 
     private Transaction processDeposit(Account toAccount, BigDecimal amount, TransactionType type, String description, String reference) {
@@ -81,22 +74,24 @@ public class DepositService {
             throw new IllegalArgumentException("Invalid deposit amount");
         }
 
-        toAccount.setBalance(toAccount.getBalance().add(amount));
-        accountRepository.save(toAccount);
-
         Transaction transaction = createTransaction(toAccount, amount, type, description, reference);
-        transactionRepository.save(transaction);
-
-        return transaction;
+        return ledgerService.post(transaction, BalanceMutationService.Floor.ZERO);
     }
 
     private Account getMemberAccount(Member member, String accountNumber) {
-        return accountRepository.findByAccountNumberAndMemberMemberNumber(accountNumber, member.getMemberNumber())
+        AccountDirectory.AccountInfo account = accountDirectory.find(accountNumber)
+                .filter(info -> info.isOwnedBy(member))
                 .orElseThrow(() -> new RuntimeException("Account not found or does not belong to member"));
+        if (!account.isActive()) {
+            throw new BadRequestException("Account " + accountNumber + " is not active");
+        }
+        // Reference only: the balance is changed by a guarded update, never through the entity
+        return accountRepository.getReferenceById(account.getId());
     }
 
     private Transaction createTransaction(Account toAccount, BigDecimal amount, TransactionType type, String description, String reference) {
         return Transaction.builder()
+                .transactionId(idGenerator.nextTransactionId("DEP"))
                 .toAccount(toAccount)
                 .amount(amount)
                 .transactionType(type)
@@ -106,11 +101,11 @@ public class DepositService {
                 .build();
     }
 
-    private TransactionResponse mapToTransactionResponse(Transaction transaction) {
+    private TransactionResponse mapToTransactionResponse(Transaction transaction, String fromAccountNumber, String toAccountNumber) {
         return TransactionResponse.builder()
                 .transactionId(transaction.getTransactionId())
-                .toAccountNumber(transaction.getToAccount() != null ? transaction.getToAccount().getAccountNumber() : null)
-                .fromAccountNumber(transaction.getFromAccount() != null ? transaction.getFromAccount().getAccountNumber() : null)
+                .toAccountNumber(toAccountNumber)
+                .fromAccountNumber(fromAccountNumber)
                 .amount(transaction.getAmount())
                 .transactionType(transaction.getTransactionType().name())
                 .status(transaction.getStatus().name())
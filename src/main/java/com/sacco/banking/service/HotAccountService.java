@@ -0,0 +1,120 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.Account;
+import com.sacco.banking.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Sharded balances for designated hot accounts (SACCO collection, loan-repayment and fee-income pools).
+ * Credits to those accounts are spread over a fixed number of slot rows so concurrent payers do not
+ * queue on one row lock; a compactor periodically folds the slots back into the account row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HotAccountService {
+
+    private static final String CREDIT_SLOT_SQL =
+            "INSERT INTO account_balance_slots (id, account_id, slot, amount) " +
+            "VALUES (nextval('account_balance_slots_seq'), ?, ?, ?) " +
+            "ON CONFLICT (account_id, slot) DO UPDATE SET amount = account_balance_slots.amount + EXCLUDED.amount";
+
+    // Drain every slot and add the total to the account row in one statement
+    private static final String COMPACT_SQL =
+            "WITH drained AS (DELETE FROM account_balance_slots WHERE account_id = ? RETURNING amount) " +
+            "UPDATE accounts SET balance = balance + (SELECT COALESCE(SUM(amount), 0) FROM drained), updated_date = ? " +
+            "WHERE id = ? AND EXISTS (SELECT 1 FROM drained)";
+
+    private final AccountRepository accountRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${hot-accounts.account-numbers:}")
+    private List<String> hotAccountNumbers;
+
+    @Value("${hot-accounts.slots:8}")
+    private int slots;
+
+    private volatile Set<Long> shardedAccountIds = Set.of();
+
+    /**
+     * Resolve the configured account numbers to ids. Unknown numbers are logged and ignored.
+     */
+    @Transactional(readOnly = true)
+    public void loadShardedAccounts() {
+        Set<String> numbers = hotAccountNumbers.stream()
+                .map(String::trim)
+                .filter(number -> !number.isEmpty())
+                .collect(Collectors.toSet());
+        if (numbers.isEmpty()) {
+            return;
+        }
+
+        List<Account> accounts = accountRepository.findByAccountNumberIn(numbers);
+        shardedAccountIds = accounts.stream().map(Account::getId).collect(Collectors.toUnmodifiableSet());
+
+        if (accounts.size() < numbers.size()) {
+            log.warn("Some configured hot accounts do not exist; sharding {} of {}", accounts.size(), numbers.size());
+        }
+        log.info("Sharding balances of {} hot accounts over {} slots", shardedAccountIds.size(), slots);
+    }
+
+    public boolean isSharded(Long accountId) {
+        return shardedAccountIds.contains(accountId);
+    }
+
+    public Set<Long> getShardedAccountIds() {
+        return shardedAccountIds;
+    }
+
+    /**
+     * Add the amount to a randomly chosen slot of the account, leaving the account row untouched.
+     */
+    @Transactional
+    public void creditSlot(Long accountId, BigDecimal amount) {
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        jdbcTemplate.update(CREDIT_SLOT_SQL, accountId, slot, amount);
+    }
+
+    /**
+     * Fold the account's slots into its balance column.
+     *
+     * @return true when there was anything to fold in
+     */
+    @Transactional
+    public boolean compact(Long accountId) {
+        return jdbcTemplate.update(COMPACT_SQL, accountId, Timestamp.valueOf(LocalDateTime.now()), accountId) > 0;
+    }
+
+    /**
+     * Drop uncompacted slots, for when the balance column is being reset from the ledger.
+     */
+    @Transactional
+    public void discardSlots(Long accountId) {
+        jdbcTemplate.update("DELETE FROM account_balance_slots WHERE account_id = ?", accountId);
+    }
+
+    @Scheduled(fixedDelayString = "${hot-accounts.compaction-interval-ms:5000}")
+    public void compactAll() {
+        for (Long accountId : shardedAccountIds) {
+            try {
+                compact(accountId);
+            } catch (Exception e) {
+                log.error("Failed to compact balance slots of account {}", accountId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.sacco.banking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sacco.banking.dto.response.TransactionResponse;
+import com.sacco.banking.entity.IdempotencyRecord;
+import com.sacco.banking.entity.Member;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.exception.PartiallyCommittedException;
+import com.sacco.banking.repository.IdempotencyRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Makes money-moving requests safe to retry. A request carrying an Idempotency-Key runs at most once
+ * per member; retries get the stored response back from memory or from the idempotency_keys table,
+ * and concurrent duplicates wait on the first execution instead of running in parallel. Batches,
+ * which commit in parts, reserve their key before they start.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    // Request hash and response of a key whose action is still running (or was cut short)
+    private static final String RESERVED = "";
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${idempotency.retention-hours:24}")
+    private int retentionHours;
+
+    private final Map<String, StoredResponse> recentResponses = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private final ConcurrentHashMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run the action once for this key, or replay the response of the run that already happened.
+     * Without a key the action simply runs.
+     */
+    public TransactionResponse execute(String idempotencyKey, Member member, String operation,
+                                       Object request, Supplier<TransactionResponse> action) {
+        return execute(idempotencyKey, member, operation, request, TransactionResponse.class, action);
+    }
+
+    public <T> T execute(String idempotencyKey, Member member, String operation,
+                         Object request, Class<T> type, Supplier<T> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = key(idempotencyKey, member);
+        String requestHash = hash(operation, request);
+
+        StoredResponse cached = cachedResponse(key);
+        if (cached != null) {
+            return replay(cached, requestHash, type);
+        }
+
+        CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, execution);
+        if (running != null) {
+            // A duplicate is already executing: share its outcome
+            return replay(await(running), requestHash, type);
+        }
+
+        try {
+            StoredResponse stored = idempotencyRecordRepository.findById(key)
+                    .map(record -> stored(record, type))
+                    .orElseGet(() -> run(key, operation, requestHash, type, action));
+
+            cacheResponse(key, stored);
+            execution.complete(stored);
+            return replay(stored, requestHash, type);
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, execution);
+        }
+    }
+
+    /**
+     * Run the action and record its response in the same database transaction, so the money
+     * movement and the key commit or roll back together.
+     */
+    private <T> StoredResponse run(String key, String operation, String requestHash, Class<T> type, Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> {
+                T response = action.get();
+                int inserted = idempotencyRecordRepository.insertIfAbsent(
+                        key, operation, requestHash, serialize(response), LocalDateTime.now());
+                if (inserted == 0) {
+                    throw new KeyAlreadyUsedException();
+                }
+                return new StoredResponse(requestHash, response);
+            });
+        } catch (KeyAlreadyUsedException e) {
+            // Another node committed the same key first; our work was rolled back, so replay theirs
+            log.info("Idempotency key {} was completed concurrently elsewhere, replaying stored response", key);
+            IdempotencyRecord record = idempotencyRecordRepository.findById(key)
+                    .orElseThrow(() -> new BadRequestException("Request with this Idempotency-Key is still in progress"));
+            return stored(record, type);
+        }
+    }
+
+    /**
+     * Like {@link #execute}, for actions that commit in several transactions of their own, such as
+     * batches. The key is reserved before the action starts and completed with its response
+     * afterwards, so a retry while the action runs, or after it was cut short, never starts it again.
+     * An action that fails before committing anything frees the key; one that fails part-way signals
+     * it with {@link PartiallyCommittedException} and, like one cut short by a crash, holds the key
+     * until it expires while an operator settles its partial outcome.
+     */
+    public <T> T executeReserved(String idempotencyKey, Member member, String operation,
+                                 Object request, Class<T> type, Supplier<T> action) {
+        return reserved(idempotencyKey, member, operation, type, action, () -> hash(operation, request));
+    }
+
+    /**
+     * Like {@link #executeReserved}, for a body the action streams. The request is fingerprinted from
+     * the bytes as they are read; a replay reads the retried body through to compare it.
+     */
+    public <T> T executeStreamed(String idempotencyKey, Member member, String operation,
+                                 InputStream body, Class<T> type, Function<InputStream, T> action) {
+        MessageDigest digest = sha256();
+        digest.update(operation.getBytes(StandardCharsets.UTF_8));
+        // The action may close its reader; the rest of the body still has to be fingerprinted
+        DigestInputStream fingerprinted = new DigestInputStream(new FilterInputStream(body) {
+            @Override
+            public void close() {
+            }
+        }, digest);
+
+        return reserved(idempotencyKey, member, operation, type, () -> action.apply(fingerprinted), () -> {
+            try {
+                fingerprinted.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read request body", e);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        });
+    }
+
+    private <T> T reserved(String idempotencyKey, Member member, String operation, Class<T> type,
+                           Supplier<T> action, Supplier<String> fingerprint) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = key(idempotencyKey, member);
+
+        StoredResponse cached = cachedResponse(key);
+        if (cached != null) {
+            return replay(cached, fingerprint.get(), type);
+        }
+
+        Integer reserved = transactionTemplate.execute(status -> idempotencyRecordRepository.insertIfAbsent(
+                key, operation, RESERVED, RESERVED, LocalDateTime.now()));
+        if (reserved == null || reserved == 0) {
+            StoredResponse stored = idempotencyRecordRepository.findById(key)
+                    .map(record -> stored(record, type))
+                    .orElseThrow(() -> new BadRequestException("Request with this Idempotency-Key is still in progress"));
+            cacheResponse(key, stored);
+            return replay(stored, fingerprint.get(), type);
+        }
+
+        T response;
+        try {
+            response = action.get();
+        } catch (PartiallyCommittedException e) {
+            // Part of the work is committed: keep the key reserved so a retry cannot run it twice
+            throw e;
+        } catch (RuntimeException e) {
+            // Nothing was committed: free the key for a retry or a corrected request
+            transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.deleteById(key));
+            throw e;
+        }
+
+        StoredResponse stored = new StoredResponse(fingerprint.get(), response);
+        transactionTemplate.executeWithoutResult(status ->
+                idempotencyRecordRepository.complete(key, stored.requestHash(), serialize(response)));
+        cacheResponse(key, stored);
+        return response;
+    }
+
+    @Transactional
+    public int cleanupExpiredKeys() {
+        int deleted = idempotencyRecordRepository.deleteOlderThan(LocalDateTime.now().minusHours(retentionHours));
+        log.info("Deleted {} expired idempotency keys", deleted);
+        return deleted;
+    }
+
+    private <T> T replay(StoredResponse stored, String requestHash, Class<T> type) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new BadRequestException("Idempotency-Key was already used for a different request");
+        }
+        return type.cast(stored.response());
+    }
+
+    private StoredResponse stored(IdempotencyRecord record, Class<?> type) {
+        if (RESERVED.equals(record.getResponseBody())) {
+            throw new BadRequestException("Request with this Idempotency-Key is still in progress");
+        }
+        return new StoredResponse(record.getRequestHash(), deserialize(record.getResponseBody(), type));
+    }
+
+    private String key(String idempotencyKey, Member member) {
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must not exceed " + MAX_KEY_LENGTH + " characters");
+        }
+        return member.getId() + ":" + idempotencyKey;
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private StoredResponse cachedResponse(String key) {
+        synchronized (recentResponses) {
+            return recentResponses.get(key);
+        }
+    }
+
+    private void cacheResponse(String key, StoredResponse stored) {
+        synchronized (recentResponses) {
+            recentResponses.put(key, stored);
+        }
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = sha256();
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to fingerprint request", e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to fingerprint request", e);
+        }
+    }
+
+    private String serialize(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to store response for idempotent replay", e);
+        }
+    }
+
+    private Object deserialize(String body, Class<?> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to read stored idempotent response", e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, Object response) {
+    }
+
+    private static class KeyAlreadyUsedException extends RuntimeException {
+    }
+}
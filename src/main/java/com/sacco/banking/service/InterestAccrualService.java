@@ -0,0 +1,265 @@
+package com.sacco.banking.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accrues interest day by day on the balance each account holds at the end of the day, at its own
+ * annual rate over 365 days. Nothing is recomputed from history: a balance change adds the days
+ * since the previous change at the previous balance, and month-end posting pays out what the
+ * months accumulated. Changes are collected as they commit and accrued together every flush
+ * interval; hot accounts are accrued by the slot compactor instead, as their balance moves with
+ * every slot credit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InterestAccrualService {
+
+    // The day a change is accrued up to, and its month
+    private static final String TARGET =
+            "target AS (SELECT d.day, date_trunc('month', d.day::timestamp)::date AS month FROM (SELECT ?::date AS day) d)";
+
+    // Close the accounts' open months before the target month at their last balance, and carry the
+    // balance through every month up to the target day
+    private static final String ROLL_SQL =
+            "WITH " + TARGET + ", closed AS (" +
+            "  UPDATE interest_accruals r SET " +
+            "  accrued = r.accrued + r.balance * r.rate * ((r.period + interval '1 month')::date - r.accrued_through) / 365, " +
+            "  accrued_through = (r.period + interval '1 month')::date " +
+            "  FROM target t WHERE %s AND r.period < t.month AND r.accrued_through < (r.period + interval '1 month')::date " +
+            "  RETURNING r.account_id, r.period, r.balance, r.rate" +
+            ") " +
+            "INSERT INTO interest_accruals (id, account_id, period, accrued, balance, rate, accrued_through) " +
+            "SELECT nextval('interest_accruals_seq'), c.account_id, m.month, " +
+            "c.balance * c.rate * (LEAST((m.month + interval '1 month')::date, t.day) - m.month) / 365, " +
+            "c.balance, c.rate, LEAST((m.month + interval '1 month')::date, t.day) " +
+            "FROM closed c CROSS JOIN target t " +
+            "CROSS JOIN LATERAL generate_series(c.period + interval '1 month', t.month::timestamp, interval '1 month') AS g(month_start) " +
+            "CROSS JOIN LATERAL (SELECT g.month_start::date AS month) m " +
+            "ON CONFLICT (account_id, period) DO NOTHING";
+
+    private static final String ROLL_ACCOUNTS_SQL = String.format(ROLL_SQL, "r.account_id = ANY (?)");
+    private static final String ROLL_RANGE_SQL = String.format(ROLL_SQL, "r.account_id BETWEEN ? AND ?");
+
+    // Accrue the days since the last change at the old balance, then hold the current one; slots
+    // of hot accounts are part of the balance
+    private static final String ACCRUE_SQL =
+            "WITH " + TARGET + " " +
+            "INSERT INTO interest_accruals (id, account_id, period, accrued, balance, rate, accrued_through) " +
+            "SELECT nextval('interest_accruals_seq'), a.id, t.month, 0, " +
+            "a.balance + COALESCE((SELECT SUM(s.amount) FROM account_balance_slots s WHERE s.account_id = a.id), 0), " +
+            "a.interest_rate, t.day FROM accounts a CROSS JOIN target t " +
+            "WHERE %s AND a.interest_rate > 0 ORDER BY a.id " +
+            "ON CONFLICT (account_id, period) DO UPDATE SET " +
+            "accrued = interest_accruals.accrued + interest_accruals.balance * interest_accruals.rate " +
+            "* (EXCLUDED.accrued_through - interest_accruals.accrued_through) / 365, " +
+            "accrued_through = EXCLUDED.accrued_through, balance = EXCLUDED.balance, rate = EXCLUDED.rate " +
+            "WHERE interest_accruals.accrued_through <= EXCLUDED.accrued_through";
+
+    private static final String ACCRUE_ACCOUNTS_SQL = String.format(ACCRUE_SQL, "a.id = ANY (?)");
+
+    // Accounts that earn interest but have never changed since accrual started
+    private static final String SEED_SQL = String.format(ACCRUE_SQL,
+            "NOT EXISTS (SELECT 1 FROM interest_accruals r WHERE r.account_id = a.id)");
+
+    // Accounts whose latest accrual holds another balance or rate than the account now has: a
+    // change whose accrual failed, or a balance written without announcing the change
+    private static final String DRIFTED_SQL =
+            "SELECT a.id FROM accounts a JOIN interest_accruals r ON r.account_id = a.id " +
+            "AND r.period = (SELECT MAX(x.period) FROM interest_accruals x WHERE x.account_id = a.id) " +
+            "WHERE %s AND a.interest_rate > 0 AND (a.interest_rate <> r.rate OR r.balance <> a.balance + " +
+            "COALESCE((SELECT SUM(s.amount) FROM account_balance_slots s WHERE s.account_id = a.id), 0)) ORDER BY a.id";
+
+    private static final String DRIFTED_RANGE_SQL = String.format(DRIFTED_SQL, "a.id BETWEEN ? AND ?");
+    private static final String DRIFTED_ACCOUNTS_SQL = String.format(DRIFTED_SQL, "a.id = ANY (?)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final HotAccountService hotAccountService;
+
+    // Changed accounts awaiting the next flush, with the day they changed
+    private final ConcurrentHashMap<Long, LocalDate> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Queue the changed accounts once their new balances are committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAccountsChanged(AccountsChangedEvent event) {
+        LocalDate today = LocalDate.now();
+        for (Long accountId : event.accountIds()) {
+            if (!hotAccountService.isSharded(accountId)) {
+                pending.put(accountId, today);
+            }
+        }
+    }
+
+    /**
+     * Accrue the queued accounts up to the day they changed, in one transaction per day
+     */
+    @Scheduled(fixedDelayString = "${interest.accrual-flush-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, List<Long>> byDay = new TreeMap<>();
+        for (Long accountId : List.copyOf(pending.keySet())) {
+            LocalDate day = pending.remove(accountId);
+            if (day != null) {
+                byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(accountId);
+            }
+        }
+        byDay.forEach((day, accountIds) -> {
+            try {
+                accrue(accountIds, day);
+            } catch (Exception e) {
+                // Until the reconcile finds them, the accounts keep accruing on the balance recorded before
+                log.error("Failed to accrue interest for {} accounts", accountIds.size(), e);
+            }
+        });
+    }
+
+    /**
+     * Accrue the hot accounts whose balance, slots included, moved since their last accrual. Their
+     * changes are not queued, as every slot credit would queue the account again.
+     */
+    @Scheduled(fixedDelayString = "${hot-accounts.compaction-interval-ms:5000}")
+    public void accrueHotAccounts() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    reconcile(hotAccountService.getShardedAccountIds()));
+        } catch (Exception e) {
+            log.error("Failed to accrue interest for hot accounts", e);
+        }
+    }
+
+    /**
+     * Accrue the accounts up to the day and record their current balances and rates from then on
+     */
+    public void accrue(Collection<Long> accountIds, LocalDate day) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        Long[] ids = accountIds.stream().sorted().distinct().toArray(Long[]::new);
+        // Runs outside the changing transaction, so it needs a transaction of its own
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> accrue(ids, day));
+    }
+
+    /**
+     * Re-accrue those of the accounts whose recorded balance or rate no longer matches, from today on
+     *
+     * @return number of accounts corrected
+     */
+    @Transactional
+    public int reconcile(Collection<Long> accountIds) {
+        if (accountIds.isEmpty()) {
+            return 0;
+        }
+        Long[] ids = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DRIFTED_ACCOUNTS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", accountIds.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getLong(1)).toArray(Long[]::new);
+        if (ids.length > 0) {
+            accrue(ids, LocalDate.now());
+        }
+        return ids.length;
+    }
+
+    /**
+     * Re-accrue the accounts in the id range (inclusive) whose recorded balance or rate no longer
+     * matches the account, from today on, and start accruing for any that have no accrual yet
+     *
+     * @return number of accounts corrected
+     */
+    @Transactional
+    public int reconcile(long firstAccountId, long lastAccountId) {
+        Long[] ids = jdbcTemplate.queryForList(DRIFTED_RANGE_SQL, Long.class, firstAccountId, lastAccountId).toArray(Long[]::new);
+        if (ids.length > 0) {
+            accrue(ids, LocalDate.now());
+            log.warn("Reconciled interest accrual of {} accounts whose recorded balance had drifted", ids.length);
+        }
+        return ids.length + seedMissing();
+    }
+
+    @Transactional
+    public int reconcile() {
+        return reconcile(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private void accrue(Long[] ids, LocalDate day) {
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ROLL_ACCOUNTS_SQL);
+            statement.setDate(1, Date.valueOf(day));
+            statement.setArray(2, connection.createArrayOf("bigint", ids));
+            return statement;
+        });
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ACCRUE_ACCOUNTS_SQL);
+            statement.setDate(1, Date.valueOf(day));
+            statement.setArray(2, connection.createArrayOf("bigint", ids));
+            return statement;
+        });
+    }
+
+    /**
+     * Close every month before the given one for the accounts in the id range (inclusive), at the
+     * balances they last held
+     */
+    @Transactional
+    public void closeMonthsBefore(YearMonth month, long firstAccountId, long lastAccountId) {
+        jdbcTemplate.update(ROLL_RANGE_SQL, Date.valueOf(month.atDay(1)), firstAccountId, lastAccountId);
+    }
+
+    /**
+     * Remove the account's accruals up to and including the month, to be paid out
+     *
+     * @return the accrued interest rounded to cents
+     */
+    @Transactional
+    public BigDecimal take(Long accountId, YearMonth through) {
+        BigDecimal accrued = jdbcTemplate.queryForObject(
+                "WITH taken AS (DELETE FROM interest_accruals WHERE account_id = ? AND period <= ? RETURNING accrued) " +
+                "SELECT COALESCE(SUM(accrued), 0) FROM taken",
+                BigDecimal.class, accountId, Date.valueOf(through.atDay(1)));
+        return accrued.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Start accruing for interest-earning accounts that have no accrual yet, from today
+     */
+    @Transactional
+    public int seedMissing() {
+        int seeded = jdbcTemplate.update(SEED_SQL, Date.valueOf(LocalDate.now()));
+        if (seeded > 0) {
+            log.info("Started interest accrual for {} accounts", seeded);
+        }
+        return seeded;
+    }
+}
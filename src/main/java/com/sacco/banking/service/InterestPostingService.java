@@ -0,0 +1,437 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.Account;
+import com.sacco.banking.entity.InterestRun;
+import com.sacco.banking.entity.InterestRunChunk;
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.enums.AccountStatus;
+import com.sacco.banking.enums.InterestRunStatus;
+import com.sacco.banking.enums.NotificationType;
+import com.sacco.banking.enums.TransactionStatus;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.repository.AccountRepository;
+import com.sacco.banking.repository.InterestRunChunkRepository;
+import com.sacco.banking.repository.InterestRunRepository;
+import com.sacco.banking.util.IdGenerator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Month-end payout of the interest accrued by {@link InterestAccrualService}, as a restartable
+ * batch. The accounts are cut into id ranges when a run starts; workers claim ranges with SKIP
+ * LOCKED and post each one with a single set-based statement (balances, transactions, ledger legs
+ * and notifications) that commits together with the range's COMPLETED mark. Every node joins a run
+ * in progress, and a crashed or interrupted run resumes with the ranges still pending; no range is
+ * ever posted twice. Each node runs at most its own number of workers, whoever started them, and
+ * across the cluster at most max-workers ranges are posted at once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InterestPostingService {
+
+    // Two-key advisory locks (WORKER_LOCK_KEY, slot) held by the transaction posting a range
+    private static final int WORKER_LOCK_KEY = 0x696e74;
+
+    // Takes the first free cluster-wide worker slot; EXISTS stops at the first lock taken
+    private static final String WORKER_SLOT_SQL =
+            "SELECT EXISTS (SELECT 1 FROM generate_series(0, ?) AS s(slot) WHERE pg_try_advisory_xact_lock(?, s.slot))";
+
+    // First account id of every chunk of chunkSize interest-earning accounts
+    private static final String BOUNDARIES_SQL =
+            "SELECT id FROM (SELECT id, row_number() OVER (ORDER BY id) AS rn FROM accounts " +
+            "WHERE status = 'ACTIVE' AND interest_rate > 0) eligible WHERE rn % ? = 1 ORDER BY id";
+
+    private static final String CLAIM_SQL =
+            "SELECT id, first_account_id, last_account_id FROM interest_run_chunks " +
+            "WHERE run_id = ? AND status = 'PENDING' ORDER BY first_account_id LIMIT 1 FOR UPDATE SKIP LOCKED";
+
+    // Locks the chunk's accounts in id order, the order every other batch statement uses
+    private static final String ELIGIBLE_SQL =
+            "SELECT a.id FROM accounts a WHERE a.id BETWEEN ? AND ? AND a.status = 'ACTIVE' AND a.id <> ALL (?) " +
+            "AND EXISTS (SELECT 1 FROM interest_accruals r WHERE r.account_id = a.id AND r.period <= ?) " +
+            "ORDER BY a.id FOR UPDATE";
+
+    // Pays out the accruals of the period and any earlier unposted ones, rounded to cents once
+    private static final String POST_SQL =
+            "WITH interest AS (" +
+            "  SELECT a.id AS account_id, a.member_id, v.transaction_ref, ROUND(SUM(r.accrued), 2) AS amount " +
+            "  FROM unnest(?::bigint[], ?::text[]) AS v(account_id, transaction_ref) JOIN accounts a ON a.id = v.account_id " +
+            "  JOIN interest_accruals r ON r.account_id = v.account_id AND r.period <= ? " +
+            "  GROUP BY a.id, a.member_id, v.transaction_ref" +
+            "), taken AS (" +
+            "  DELETE FROM interest_accruals r USING interest i WHERE r.account_id = i.account_id AND r.period <= ?" +
+            "), credited AS (" +
+            "  UPDATE accounts a SET balance = a.balance + i.amount, updated_date = ?, " +
+            "  low_balance_alerted_at = CASE WHEN a.balance + i.amount > COALESCE(a.minimum_balance, 0) * 1.1 " +
+            "  THEN NULL ELSE a.low_balance_alerted_at END " +
+            "  FROM interest i WHERE a.id = i.account_id AND i.amount > 0 " +
+            "  RETURNING a.id, a.account_type, a.balance, i.member_id, i.amount, i.transaction_ref" +
+            "), posted AS (" +
+            "  INSERT INTO transactions (id, transaction_id, transaction_type, amount, fee, description, status, " +
+            "  created_at, processed_at, updated_at, to_account_id) " +
+            "  SELECT nextval('transactions_seq'), c.transaction_ref, 'INTEREST_PAYMENT', c.amount, 0, 'Monthly interest', " +
+            "  'COMPLETED', ?, ?, ?, c.id FROM credited c " +
+            "  RETURNING id, transaction_id, to_account_id, amount" +
+            "), legs AS (" +
+            "  INSERT INTO ledger_entries (id, transaction_id, transaction_ref, transaction_type, account_id, ledger_account, " +
+            "  entry_type, amount, created_at, transaction_created_at) " +
+            "  SELECT nextval('ledger_entries_seq'), p.id, p.transaction_id, 'INTEREST_PAYMENT', leg.account_id, " +
+            "  leg.ledger_account, leg.entry_type, p.amount, ?, ? FROM posted p CROSS JOIN LATERAL (VALUES " +
+            "  (NULL::bigint, 'INTEREST_EXPENSE', 'DEBIT'), (p.to_account_id, 'MEMBER_ACCOUNT', 'CREDIT')) " +
+            "  AS leg(account_id, ledger_account, entry_type)" +
+            "), notified AS (" +
+            "  INSERT INTO notifications (id, member_number, title, message, type, notification_type, priority, is_read, created_date) " +
+            "  SELECT nextval('notifications_seq'), m.member_number, 'Interest Added', " +
+            "  format('Monthly interest of KSH %s has been added to your %s account. New balance: KSH %s', " +
+            "  to_char(c.amount, 'FM999999999999990.00'), c.account_type, to_char(c.balance, 'FM999999999999990.00')), " +
+            "  'SUCCESS', 'SUCCESS', 1, false, ? FROM credited c JOIN members m ON m.id = c.member_id" +
+            ") " +
+            "SELECT id, member_id, amount FROM credited";
+
+    private final InterestRunRepository interestRunRepository;
+    private final InterestRunChunkRepository interestRunChunkRepository;
+    private final AccountRepository accountRepository;
+    private final LedgerService ledgerService;
+    private final HotAccountService hotAccountService;
+    private final MemberStatsService memberStatsService;
+    private final InterestAccrualService interestAccrualService;
+    private final NotificationHelper notificationHelper;
+    private final IdGenerator idGenerator;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${interest.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${interest.workers:2}")
+    private int workers;
+
+    @Value("${interest.max-workers:4}")
+    private int maxWorkers;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int poolSize;
+
+    // Shared by post() and joinRunning(), so together they never exceed this node's workers
+    private Semaphore localWorkers;
+
+    @PostConstruct
+    void init() {
+        // Each worker holds a connection for a whole chunk; requests and lease renewal need the rest
+        if (workers < 1 || workers > poolSize - 2) {
+            throw new IllegalStateException("interest.workers (" + workers + ") must be between 1 and the connection pool size ("
+                    + poolSize + ") minus 2");
+        }
+        localWorkers = new Semaphore(workers);
+    }
+
+    // How long post() waits for chunks other nodes claimed before it reports the run unfinished
+    @Value("${interest.await-timeout-ms:1800000}")
+    private long awaitTimeoutMs;
+
+    /**
+     * Post the month's interest, or finish posting it when an earlier run stopped part way.
+     * Does nothing when the month has already been posted. Returns once every chunk is posted,
+     * including those other nodes claimed, or while the run is still RUNNING when a chunk failed
+     * here or the others did not finish in time.
+     */
+    public InterestRun post(YearMonth period) {
+        InterestRun run = startOrResume(period);
+        if (run.getStatus() == InterestRunStatus.COMPLETED) {
+            log.info("Interest for {} was already posted", period);
+            return run;
+        }
+
+        long deadline = System.currentTimeMillis() + awaitTimeoutMs;
+        while (work(run)) {
+            run = complete(run.getId());
+            if (run.getStatus() == InterestRunStatus.COMPLETED || System.currentTimeMillis() > deadline) {
+                return run;
+            }
+            // Chunks claimed by joining nodes are still being posted; any they give up are pending again
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return run;
+            }
+        }
+        return interestRunRepository.findById(run.getId()).orElseThrow();
+    }
+
+    /**
+     * Help with the runs in progress, whichever node started them: every node claims chunks until
+     * none are left, so the fleet shares the month's work. Also resumes runs cut short by a restart.
+     */
+    @Scheduled(fixedDelayString = "${interest.join-interval-ms:15000}")
+    public void joinRunning() {
+        for (InterestRun run : interestRunRepository.findByStatusOrderByPeriodAsc(InterestRunStatus.RUNNING)) {
+            if (work(run)) {
+                complete(run.getId());
+            }
+        }
+    }
+
+    public List<InterestRun> getRecentRuns() {
+        return interestRunRepository.findTop24ByOrderByPeriodDesc();
+    }
+
+    /**
+     * Post the run's pending chunks on this node's free workers
+     *
+     * @return false when the workers stopped on a failure; true when they ran out of chunks or of
+     * cluster-wide worker slots, or none was free here
+     */
+    private boolean work(InterestRun run) {
+        YearMonth period = YearMonth.from(run.getPeriod());
+        int free = 0;
+        while (free < workers && localWorkers.tryAcquire()) {
+            free++;
+        }
+        if (free == 0) {
+            return true;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(free, new CustomizableThreadFactory("interest-"));
+        int permits = free;
+        try {
+            List<Future<?>> results = new ArrayList<>(free);
+            for (int i = 0; i < free; i++) {
+                results.add(pool.submit(() -> {
+                    while (postNextChunk(run.getId(), period)) {
+                        // Keep claiming until no pending chunk or worker slot is left
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interest run for {} interrupted; another node or the next join picks it up", period);
+            return false;
+        } catch (ExecutionException e) {
+            // Committed chunks stay posted; the failed one is still pending and is retried by the next join
+            log.error("Interest run for {} stopped on a failed chunk", period, e.getCause());
+            return false;
+        } finally {
+            pool.shutdownNow();
+            localWorkers.release(permits);
+        }
+    }
+
+    private InterestRun startOrResume(YearMonth period) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            return transaction.execute(status -> interestRunRepository.findByPeriod(period.atDay(1))
+                    .orElseGet(() -> plan(period)));
+        } catch (DataIntegrityViolationException e) {
+            // Another node planned the same month first
+            return interestRunRepository.findByPeriod(period.atDay(1)).orElseThrow(() -> e);
+        }
+    }
+
+    private InterestRun plan(YearMonth period) {
+        List<Long> boundaries = jdbcTemplate.queryForList(BOUNDARIES_SQL, Long.class, chunkSize);
+        InterestRun run = interestRunRepository.saveAndFlush(InterestRun.builder()
+                .period(period.atDay(1))
+                .status(InterestRunStatus.RUNNING)
+                .chunkCount(boundaries.size())
+                .startedAt(LocalDateTime.now())
+                .build());
+
+        List<InterestRunChunk> chunks = new ArrayList<>(boundaries.size());
+        for (int i = 0; i < boundaries.size(); i++) {
+            // The ranges cover every id, so accounts that became eligible after planning are still paid
+            long first = i == 0 ? 0 : boundaries.get(i);
+            long last = i + 1 < boundaries.size() ? boundaries.get(i + 1) - 1 : Long.MAX_VALUE;
+            chunks.add(InterestRunChunk.builder()
+                    .runId(run.getId())
+                    .firstAccountId(first)
+                    .lastAccountId(last)
+                    .status(InterestRunStatus.PENDING)
+                    .build());
+        }
+        interestRunChunkRepository.saveAll(chunks);
+        log.info("Planned interest run for {}: {} chunks of up to {} accounts", period, chunks.size(), chunkSize);
+        return run;
+    }
+
+    /**
+     * Claim one pending chunk and post it, marking it COMPLETED in the same transaction
+     *
+     * @return false when no pending chunk was left to claim, or every cluster-wide worker slot is taken
+     */
+    private boolean postNextChunk(Long runId, YearMonth period) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Boolean claimed = transaction.execute(status -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(WORKER_SLOT_SQL, Boolean.class, maxWorkers - 1, WORKER_LOCK_KEY))) {
+                return false;
+            }
+            List<Map<String, Object>> chunk = jdbcTemplate.queryForList(CLAIM_SQL, runId);
+            if (chunk.isEmpty()) {
+                return false;
+            }
+            Long chunkId = ((Number) chunk.get(0).get("id")).longValue();
+            long first = ((Number) chunk.get(0).get("first_account_id")).longValue();
+            long last = ((Number) chunk.get(0).get("last_account_id")).longValue();
+
+            ChunkResult result = postChunk(first, last, period);
+            jdbcTemplate.update("UPDATE interest_run_chunks SET status = 'COMPLETED', accounts_posted = ?, " +
+                    "total_interest = ?, completed_at = ? WHERE id = ?",
+                    result.accounts(), result.total(), Timestamp.valueOf(LocalDateTime.now()), chunkId);
+            log.debug("Posted interest chunk {}-{}: {} accounts, {}", first, last, result.accounts(), result.total());
+            return true;
+        });
+        return Boolean.TRUE.equals(claimed);
+    }
+
+    private ChunkResult postChunk(long first, long last, YearMonth period) {
+        // Balances the accrual missed are picked up first; accounts without a change since the month
+        // ended still hold their closing balance in the open row
+        interestAccrualService.reconcile(first, last);
+        interestAccrualService.closeMonthsBefore(period.plusMonths(1), first, last);
+
+        Date through = Date.valueOf(period.atDay(1));
+        Set<Long> hotAccountIds = hotAccountService.getShardedAccountIds();
+        Long[] excluded = hotAccountIds.toArray(Long[]::new);
+        List<Long> accountIds = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ELIGIBLE_SQL);
+            statement.setLong(1, first);
+            statement.setLong(2, last);
+            statement.setArray(3, connection.createArrayOf("bigint", excluded));
+            statement.setDate(4, through);
+            return statement;
+        }, (rs, rowNum) -> rs.getLong(1));
+
+        int accounts = 0;
+        BigDecimal total = BigDecimal.ZERO;
+        Set<Long> changed = new HashSet<>();
+
+        if (!accountIds.isEmpty()) {
+            String[] references = new String[accountIds.size()];
+            for (int i = 0; i < references.length; i++) {
+                references[i] = idGenerator.nextTransactionId("INT");
+            }
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+            List<MemberStatsService.Credit> credits = jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(POST_SQL);
+                statement.setArray(1, connection.createArrayOf("bigint", accountIds.toArray(Long[]::new)));
+                statement.setArray(2, connection.createArrayOf("text", references));
+                statement.setDate(3, through);
+                statement.setDate(4, through);
+                for (int parameter = 5; parameter <= 11; parameter++) {
+                    statement.setTimestamp(parameter, now);
+                }
+                return statement;
+            }, (rs, rowNum) -> {
+                changed.add(rs.getLong("id"));
+                return new MemberStatsService.Credit(rs.getLong("member_id"), rs.getBigDecimal("amount"));
+            });
+
+            memberStatsService.recordCredits(TransactionType.INTEREST_PAYMENT, now.toLocalDateTime(), credits);
+            accounts = credits.size();
+            total = credits.stream().map(MemberStatsService.Credit::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+
+        // Hot accounts keep part of their balance in slots, so they go through the ledger one by one
+        for (Long hotAccountId : hotAccountIds) {
+            if (hotAccountId >= first && hotAccountId <= last) {
+                BigDecimal interest = postHotAccount(hotAccountId, period);
+                if (interest.signum() > 0) {
+                    accounts++;
+                    total = total.add(interest);
+                    changed.add(hotAccountId);
+                }
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new AccountsChangedEvent(changed));
+        }
+        return new ChunkResult(accounts, total);
+    }
+
+    private BigDecimal postHotAccount(Long accountId, YearMonth period) {
+        Account account = accountRepository.findById(accountId).orElse(null);
+        if (account == null || account.getStatus() != AccountStatus.ACTIVE) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal interest = interestAccrualService.take(accountId, period);
+        if (interest.signum() <= 0) {
+            return BigDecimal.ZERO;
+        }
+        hotAccountService.compact(accountId);
+        BigDecimal balance = accountRepository.findById(accountId).map(Account::getBalance).orElse(BigDecimal.ZERO);
+        ledgerService.post(Transaction.builder()
+                .transactionId(idGenerator.nextTransactionId("INT"))
+                .transactionType(TransactionType.INTEREST_PAYMENT)
+                .amount(interest)
+                .fee(BigDecimal.ZERO)
+                .description("Monthly interest")
+                .toAccount(account)
+                .status(TransactionStatus.COMPLETED)
+                .processedAt(LocalDateTime.now())
+                .build(), BalanceMutationService.Floor.ZERO);
+
+        notificationHelper.notifySystemNotification(
+                account.getMember().getMemberNumber(),
+                "Interest Added",
+                String.format("Monthly interest of KSH %.2f has been added to your %s account. New balance: KSH %.2f",
+                        interest.doubleValue(), account.getAccountType().name(), balance.add(interest).doubleValue()),
+                NotificationType.SUCCESS,
+                1);
+        return interest;
+    }
+
+    private InterestRun complete(Long runId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        return transaction.execute(status -> {
+            jdbcTemplate.update("UPDATE interest_runs r SET status = 'COMPLETED', completed_at = ?, " +
+                    "accounts_posted = (SELECT COALESCE(SUM(accounts_posted), 0) FROM interest_run_chunks WHERE run_id = r.id), " +
+                    "total_interest = (SELECT COALESCE(SUM(total_interest), 0) FROM interest_run_chunks WHERE run_id = r.id) " +
+                    "WHERE r.id = ? AND r.status = 'RUNNING' AND NOT EXISTS " +
+                    "(SELECT 1 FROM interest_run_chunks WHERE run_id = r.id AND status = 'PENDING')",
+                    Timestamp.valueOf(LocalDateTime.now()), runId);
+            InterestRun run = interestRunRepository.findById(runId).orElseThrow();
+            if (run.getStatus() == InterestRunStatus.COMPLETED) {
+                log.info("Posted interest for {}: {} accounts, {} in total", YearMonth.from(run.getPeriod()),
+                        run.getAccountsPosted(), run.getTotalInterest());
+            }
+            return run;
+        });
+    }
+
+    private record ChunkResult(int accounts, BigDecimal total) {
+    }
+}
@@ -0,0 +1,178 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.JobRun;
+import com.sacco.banking.enums.JobRunStatus;
+import com.sacco.banking.repository.JobRunRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs each occurrence of a cluster-wide scheduled job on one node. Every node's scheduler fires,
+ * the first to take the job's lease runs it and the others skip. Only a successful run completes
+ * the occurrence: a failed one releases its lease, and one whose node died stops renewing it, so
+ * {@link #findUnfinished} hands the same occurrence to a retry. Each run is recorded in job_runs.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobCoordinator {
+
+    // Taken for a new occurrence once the last one completed, or from a holder that stopped renewing
+    private static final String ACQUIRE_SQL =
+            "INSERT INTO job_leases (job_name, owner, run_key, acquired_at, lease_until) " +
+            "VALUES (?, ?, ?, LOCALTIMESTAMP, LOCALTIMESTAMP + ? * interval '1 second') " +
+            "ON CONFLICT (job_name) DO UPDATE SET owner = EXCLUDED.owner, run_key = EXCLUDED.run_key, " +
+            "acquired_at = EXCLUDED.acquired_at, lease_until = EXCLUDED.lease_until, completed_at = NULL " +
+            "WHERE (job_leases.completed_at IS NOT NULL AND job_leases.run_key <> EXCLUDED.run_key) " +
+            "OR (job_leases.completed_at IS NULL AND job_leases.lease_until < EXCLUDED.acquired_at)";
+
+    private static final String RENEW_SQL =
+            "UPDATE job_leases SET lease_until = LOCALTIMESTAMP + ? * interval '1 second' " +
+            "WHERE job_name = ? AND owner = ? AND completed_at IS NULL";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE job_leases SET completed_at = LOCALTIMESTAMP WHERE job_name = ? AND owner = ?";
+
+    // Expire the lease at once, so the occurrence can be retried without waiting for it to run out
+    private static final String RELEASE_SQL =
+            "UPDATE job_leases SET lease_until = LOCALTIMESTAMP - interval '1 second' WHERE job_name = ? AND owner = ?";
+
+    private static final String UNFINISHED_SQL =
+            "SELECT job_name, run_key FROM job_leases WHERE completed_at IS NULL AND lease_until < LOCALTIMESTAMP";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobRunRepository jobRunRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Set<String> heldJobs = ConcurrentHashMap.newKeySet();
+
+    @Value("${jobs.lease-seconds:300}")
+    private int leaseSeconds;
+
+    @Value("${jobs.node-id:}")
+    private String configuredNodeId;
+
+    private String nodeId;
+
+    @PostConstruct
+    void init() {
+        nodeId = configuredNodeId != null && !configuredNodeId.isBlank()
+                ? configuredNodeId
+                : hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Run the job's occurrence on this node, unless another node holds it or already ran it
+     *
+     * @param runKey identifies the occurrence, e.g. the day of a daily job
+     * @param work   the job; returns the number of rows it processed
+     * @return true when this node ran the occurrence
+     */
+    public boolean runOnce(String jobName, String runKey, LongSupplier work) {
+        // Bookkeeping commits on its own, whatever the caller's transaction
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        Integer acquired = transaction.execute(status ->
+                jdbcTemplate.update(ACQUIRE_SQL, jobName, getNodeId(), runKey, leaseSeconds));
+        if (acquired == null || acquired == 0) {
+            log.debug("Job {} ({}) is held or done elsewhere", jobName, runKey);
+            return false;
+        }
+
+        heldJobs.add(jobName);
+        JobRun run = transaction.execute(status -> jobRunRepository.save(JobRun.builder()
+                .jobName(jobName)
+                .runKey(runKey)
+                .owner(getNodeId())
+                .status(JobRunStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build()));
+        long started = System.nanoTime();
+
+        try {
+            long rows = work.getAsLong();
+            run.setStatus(JobRunStatus.COMPLETED);
+            run.setRowsProcessed(rows);
+            log.info("Job {} ({}) processed {} rows", jobName, runKey, rows);
+        } catch (RuntimeException e) {
+            run.setStatus(JobRunStatus.FAILED);
+            run.setErrorMessage(truncate(e.getMessage()));
+            log.error("Job {} ({}) failed", jobName, runKey, e);
+        } finally {
+            heldJobs.remove(jobName);
+            run.setFinishedAt(LocalDateTime.now());
+            run.setDurationMs((System.nanoTime() - started) / 1_000_000);
+            transaction.executeWithoutResult(status -> {
+                jobRunRepository.save(run);
+                jdbcTemplate.update(run.getStatus() == JobRunStatus.COMPLETED ? COMPLETE_SQL : RELEASE_SQL,
+                        jobName, getNodeId());
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Occurrences that failed or whose node stopped renewing the lease, by job name
+     */
+    public Map<String, String> findUnfinished() {
+        Map<String, String> unfinished = new LinkedHashMap<>();
+        jdbcTemplate.query(UNFINISHED_SQL, rs -> {
+            unfinished.put(rs.getString("job_name"), rs.getString("run_key"));
+        });
+        return unfinished;
+    }
+
+    /**
+     * Extend the leases of the jobs running here, so long runs are not taken over
+     */
+    @Scheduled(fixedDelayString = "${jobs.renew-interval-ms:60000}")
+    public void renewLeases() {
+        for (String jobName : heldJobs) {
+            if (jdbcTemplate.update(RENEW_SQL, leaseSeconds, jobName, getNodeId()) == 0) {
+                log.warn("Lost the lease of job {}; another node may run it as well", jobName);
+            }
+        }
+    }
+
+    public List<JobRun> getRecentRuns(String jobName) {
+        return jobName == null
+                ? jobRunRepository.findTop50ByOrderByStartedAtDesc()
+                : jobRunRepository.findTop50ByJobNameOrderByStartedAtDesc(jobName);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
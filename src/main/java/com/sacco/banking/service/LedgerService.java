@@ -0,0 +1,289 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.Account;
+import com.sacco.banking.entity.LedgerEntry;
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.enums.EntryType;
+import com.sacco.banking.enums.LedgerAccount;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.exception.InsufficientFundsException;
+import com.sacco.banking.exception.ResourceNotFoundException;
+import com.sacco.banking.repository.AccountRepository;
+import com.sacco.banking.repository.LedgerEntryRepository;
+import com.sacco.banking.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only double-entry journal. Every posted {@link Transaction} produces balanced
+ * debit/credit legs (plus fee legs), and member-account balances are moved by exactly
+ * the net of those legs, so the journal is the authoritative history behind each balance.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerService {
+
+    // Serializes the opening-balance backfill across nodes starting together
+    private static final long BACKFILL_LOCK_KEY = 0x6f70656eL;
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final BalanceMutationService balanceMutationService;
+    private final HotAccountService hotAccountService;
+    private final MemberStatsService memberStatsService;
+    private final TransactionLimitService transactionLimitService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public Transaction post(Transaction transaction, BalanceMutationService.Floor floor) {
+        return post(transaction, floor, "Insufficient funds");
+    }
+
+    /**
+     * Apply the transaction's legs to the member balances, persist it and append its journal entries.
+     * The guarded debit runs first, so nothing is written when the source account cannot cover it.
+     */
+    @Transactional
+    public Transaction post(Transaction transaction, BalanceMutationService.Floor floor, String insufficientFundsMessage) {
+        BigDecimal amount = transaction.getAmount();
+        BigDecimal fee = feeOf(transaction);
+
+        balanceMutationService.lockInOrder(accountIdOf(transaction.getFromAccount()), accountIdOf(transaction.getToAccount()));
+        if (transaction.getFromAccount() != null
+                && balanceMutationService.debit(transaction.getFromAccount().getId(), amount.add(fee), floor) == 0) {
+            throw new InsufficientFundsException(insufficientFundsMessage);
+        }
+        if (transaction.getToAccount() != null) {
+            balanceMutationService.credit(transaction.getToAccount().getId(), amount);
+        }
+
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        ledgerEntryRepository.saveAll(buildLegs(savedTransaction, false));
+        memberStatsService.recordPosted(List.of(savedTransaction));
+        eventPublisher.publishEvent(new AccountsChangedEvent(accountIdsOf(List.of(savedTransaction))));
+        return savedTransaction;
+    }
+
+    /**
+     * Post many account-to-account transactions in one unit of work: balances move through one
+     * JDBC batch of guarded statements, then the applied transactions and their legs are saved in bulk.
+     *
+     * @return the transactions that were applied, in input order; the rest lacked funds
+     */
+    @Transactional
+    public List<Transaction> postAll(List<Transaction> transactions) {
+        List<BalanceMutationService.Movement> movements = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (transaction.getFromAccount() == null || transaction.getToAccount() == null) {
+                throw new BadRequestException("Batch postings require a source and a destination account");
+            }
+            movements.add(new BalanceMutationService.Movement(
+                    transaction.getFromAccount().getId(),
+                    transaction.getToAccount().getId(),
+                    transaction.getAmount().add(feeOf(transaction)),
+                    transaction.getAmount()));
+        }
+
+        int[] applied = balanceMutationService.transferAll(movements);
+
+        List<Transaction> posted = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            if (applied[i] > 0) {
+                posted.add(transactions.get(i));
+            }
+        }
+
+        transactionRepository.saveAll(posted);
+        List<LedgerEntry> legs = new ArrayList<>(posted.size() * 4);
+        posted.forEach(transaction -> legs.addAll(buildLegs(transaction, false)));
+        ledgerEntryRepository.saveAll(legs);
+        memberStatsService.recordPosted(posted);
+        eventPublisher.publishEvent(new AccountsChangedEvent(accountIdsOf(posted)));
+
+        return posted;
+    }
+
+    /**
+     * Compensate a previously posted transaction by appending mirrored legs and moving the balances back.
+     */
+    @Transactional
+    public void reverse(Transaction transaction) {
+        BigDecimal amount = transaction.getAmount();
+        BigDecimal fee = feeOf(transaction);
+
+        balanceMutationService.lockInOrder(accountIdOf(transaction.getToAccount()), accountIdOf(transaction.getFromAccount()));
+        if (transaction.getToAccount() != null
+                && balanceMutationService.debit(transaction.getToAccount().getId(), amount) == 0) {
+            throw new InsufficientFundsException("Insufficient funds to reverse transaction " + transaction.getTransactionId());
+        }
+        if (transaction.getFromAccount() != null) {
+            balanceMutationService.credit(transaction.getFromAccount().getId(), amount.add(fee));
+        }
+
+        ledgerEntryRepository.saveAll(buildLegs(transaction, true));
+        memberStatsService.recordReversed(transaction);
+        transactionLimitService.recordReversed(transaction);
+        eventPublisher.publishEvent(new AccountsChangedEvent(accountIdsOf(List.of(transaction))));
+        log.info("Reversed ledger postings for transaction {}", transaction.getTransactionId());
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal getLedgerBalance(Long accountId) {
+        return ledgerEntryRepository.sumBalanceByAccountId(accountId);
+    }
+
+    /**
+     * @return true when the stored balance matches the net of the account's journal entries
+     */
+    @Transactional(readOnly = true)
+    public boolean verifyBalance(Long accountId) {
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+
+        BigDecimal ledgerBalance = ledgerEntryRepository.sumBalanceByAccountId(accountId);
+        boolean consistent = ledgerBalance.compareTo(account.getBalance()) == 0;
+        if (!consistent) {
+            log.warn("Balance mismatch on account {}: stored {} vs ledger {}",
+                    account.getAccountNumber(), account.getBalance(), ledgerBalance);
+        }
+        return consistent;
+    }
+
+    /**
+     * Reset the stored balance to the net of the account's journal entries.
+     */
+    @Transactional
+    public BigDecimal rebuildBalance(Long accountId) {
+        BigDecimal ledgerBalance = ledgerEntryRepository.sumBalanceByAccountId(accountId);
+        hotAccountService.discardSlots(accountId);
+        if (accountRepository.overwriteBalance(accountId, ledgerBalance, LocalDateTime.now()) == 0) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+        eventPublisher.publishEvent(new AccountsChangedEvent(List.of(accountId)));
+        log.info("Rebuilt balance of account {} from ledger: {}", accountId, ledgerBalance);
+        return ledgerBalance;
+    }
+
+    /**
+     * Journal the balances of accounts that predate the ledger as opening entries,
+     * so that every balance can be rebuilt from the journal alone.
+     */
+    @Transactional
+    public int backfillOpeningBalances() {
+        // A node that waited here finds the accounts already journaled by the one before it
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + BACKFILL_LOCK_KEY + ")");
+        List<Account> accounts = ledgerEntryRepository.findAccountsWithoutLedgerHistory();
+        List<LedgerEntry> entries = new ArrayList<>(accounts.size() * 2);
+
+        for (Account account : accounts) {
+            BigDecimal balance = account.getBalance();
+            EntryType memberSide = balance.signum() > 0 ? EntryType.CREDIT : EntryType.DEBIT;
+            entries.add(leg(null, account, LedgerAccount.MEMBER_ACCOUNT, memberSide, balance.abs()));
+            entries.add(leg(null, null, LedgerAccount.OPENING_BALANCE, opposite(memberSide), balance.abs()));
+        }
+
+        ledgerEntryRepository.saveAll(entries);
+        if (!accounts.isEmpty()) {
+            log.info("Journaled opening balances for {} accounts", accounts.size());
+        }
+        return accounts.size();
+    }
+
+    private List<LedgerEntry> buildLegs(Transaction transaction, boolean reversal) {
+        List<LedgerEntry> legs = new ArrayList<>(4);
+        LedgerAccount counterAccount = counterAccountFor(transaction.getTransactionType());
+        BigDecimal amount = transaction.getAmount();
+        BigDecimal fee = feeOf(transaction);
+
+        Account from = transaction.getFromAccount();
+        Account to = transaction.getToAccount();
+
+        // Principal: debit the source, credit the destination
+        legs.add(leg(transaction, from, from != null ? LedgerAccount.MEMBER_ACCOUNT : counterAccount,
+                side(EntryType.DEBIT, reversal), amount));
+        legs.add(leg(transaction, to, to != null ? LedgerAccount.MEMBER_ACCOUNT : counterAccount,
+                side(EntryType.CREDIT, reversal), amount));
+
+        // Fee: debit the payer, credit fee income
+        if (fee.signum() > 0) {
+            if (from == null) {
+                throw new BadRequestException("A fee requires a source account");
+            }
+            legs.add(leg(transaction, from, LedgerAccount.MEMBER_ACCOUNT, side(EntryType.DEBIT, reversal), fee));
+            legs.add(leg(transaction, null, LedgerAccount.FEE_INCOME, side(EntryType.CREDIT, reversal), fee));
+        }
+
+        return legs;
+    }
+
+    private LedgerEntry leg(Transaction transaction, Account account, LedgerAccount ledgerAccount,
+                            EntryType entryType, BigDecimal amount) {
+        return LedgerEntry.builder()
+                .transaction(transaction)
+                .transactionRef(transaction != null ? transaction.getTransactionId() : null)
+                .transactionType(transaction != null ? transaction.getTransactionType() : null)
+                .transactionCreatedAt(transaction != null ? transaction.getCreatedAt() : null)
+                .account(account)
+                .ledgerAccount(ledgerAccount)
+                .entryType(entryType)
+                .amount(amount)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private LedgerAccount counterAccountFor(TransactionType type) {
+        return switch (type) {
+            case DEPOSIT, WITHDRAWAL -> LedgerAccount.CASH;
+            case MPESA_DEPOSIT, MPESA_WITHDRAWAL -> LedgerAccount.MPESA_CLEARING;
+            case TRANSFER_EXTERNAL -> LedgerAccount.EXTERNAL_CLEARING;
+            case INTEREST_PAYMENT -> LedgerAccount.INTEREST_EXPENSE;
+            case LOAN_DISBURSEMENT, LOAN_REPAYMENT -> LedgerAccount.LOAN_PORTFOLIO;
+            case FEE_PAYMENT -> LedgerAccount.FEE_INCOME;
+            default -> LedgerAccount.SUSPENSE;
+        };
+    }
+
+    private EntryType side(EntryType entryType, boolean reversal) {
+        return reversal ? opposite(entryType) : entryType;
+    }
+
+    private EntryType opposite(EntryType entryType) {
+        return entryType == EntryType.DEBIT ? EntryType.CREDIT : EntryType.DEBIT;
+    }
+
+    private Set<Long> accountIdsOf(List<Transaction> transactions) {
+        Set<Long> accountIds = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getFromAccount() != null) {
+                accountIds.add(transaction.getFromAccount().getId());
+            }
+            if (transaction.getToAccount() != null) {
+                accountIds.add(transaction.getToAccount().getId());
+            }
+        }
+        return accountIds;
+    }
+
+    private Long accountIdOf(Account account) {
+        return account != null ? account.getId() : null;
+    }
+
+    private BigDecimal feeOf(Transaction transaction) {
+        return transaction.getFee() != null ? transaction.getFee() : BigDecimal.ZERO;
+    }
+}
@@ -10,6 +10,7 @@ import com.sacco.banking.enums.LoanStatus;
 import com.sacco.banking.enums.LoanType;
 import com.sacco.banking.exception.BadRequestException;
 import com.sacco.banking.repository.LoanRepository;
+import com.sacco.banking.util.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,7 +19,6 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,6 +26,7 @@ import java.util.stream.Collectors;
 public class LoanService {
 
     private final LoanRepository loanRepository;
+    private final IdGenerator idGenerator;
 
     public List<LoanResponse> getMemberLoans(Member member) {
         List<Loan> loans = loanRepository.findByMemberOrderByCreatedAtDesc(member);
@@ -51,7 +52,7 @@ public class LoanService {
 
         // Create loan application
         Loan loan = new Loan();
-        loan.setLoanNumber(generateLoanNumber());
+        loan.setLoanNumber(idGenerator.nextTransactionId("LOAN"));
         loan.setLoanType(LoanType.valueOf(request.getLoanType()));
         loan.setPrincipalAmount(request.getAmount());
         loan.setCurrentBalance(request.getAmount());
@@ -118,8 +119,4 @@ public class LoanService {
 
         return numerator.divide(denominator, 2, RoundingMode.HALF_UP);
     }
-
-    private String generateLoanNumber() {
-        return "LOAN-" + System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 4).toUpperCase();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.Account;
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.repository.MemberMonthlyStatRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the member_monthly_stats rollup. Every posting and reversal adjusts the rows of the
+ * members on both sides in the same unit of work, so monthly income and expenses are read from a
+ * few rows. Transactions count in the month they were created, reversals take them out again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MemberStatsService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO member_monthly_stats (id, member_id, month, transaction_type, " +
+            "income_amount, income_count, expense_amount, expense_count) " +
+            "VALUES (nextval('member_monthly_stats_seq'), ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (member_id, month, transaction_type) DO UPDATE SET " +
+            "income_amount = member_monthly_stats.income_amount + EXCLUDED.income_amount, " +
+            "income_count = member_monthly_stats.income_count + EXCLUDED.income_count, " +
+            "expense_amount = member_monthly_stats.expense_amount + EXCLUDED.expense_amount, " +
+            "expense_count = member_monthly_stats.expense_count + EXCLUDED.expense_count";
+
+    // Credits are income of the receiving member, debits expenses of the paying one; one member range at a time
+    private static final String REBUILD_SQL =
+            "INSERT INTO member_monthly_stats (id, member_id, month, transaction_type, " +
+            "income_amount, income_count, expense_amount, expense_count) " +
+            "SELECT nextval('member_monthly_stats_seq'), member_id, month, transaction_type, " +
+            "SUM(income_amount), SUM(income_count), SUM(expense_amount), SUM(expense_count) FROM (" +
+            "SELECT a.member_id, CAST(date_trunc('month', t.created_at) AS date) AS month, t.transaction_type, " +
+            "t.amount AS income_amount, 1 AS income_count, 0 AS expense_amount, 0 AS expense_count " +
+            "FROM transactions t JOIN accounts a ON a.id = t.to_account_id " +
+            "WHERE a.member_id BETWEEN ? AND ? AND t.created_at >= ? AND t.status NOT IN ('FAILED', 'CANCELLED', 'REVERSED') " +
+            "AND a.id <> ALL (?) " +
+            "UNION ALL " +
+            "SELECT a.member_id, CAST(date_trunc('month', t.created_at) AS date), t.transaction_type, " +
+            "0, 0, t.amount, 1 " +
+            "FROM transactions t JOIN accounts a ON a.id = t.from_account_id " +
+            "WHERE a.member_id BETWEEN ? AND ? AND t.created_at >= ? AND t.status NOT IN ('FAILED', 'CANCELLED', 'REVERSED') " +
+            "AND a.id <> ALL (?)" +
+            ") activity GROUP BY member_id, month, transaction_type";
+
+    private final MemberMonthlyStatRepository memberMonthlyStatRepository;
+    private final AccountDirectory accountDirectory;
+    private final HotAccountService hotAccountService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionArchiveService transactionArchiveService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${member-stats.rebuild-batch-members:500}")
+    private int rebuildBatchMembers;
+
+    @Transactional
+    public void recordPosted(Collection<Transaction> transactions) {
+        apply(transactions, 1);
+    }
+
+    @Transactional
+    public void recordReversed(Transaction transaction) {
+        apply(List.of(transaction), -1);
+    }
+
+    /**
+     * Credits of one type posted in bulk without transaction entities (e.g. interest), one per credited account
+     */
+    @Transactional
+    public void recordCredits(TransactionType type, LocalDateTime postedAt, Collection<Credit> credits) {
+        Map<Long, BigDecimal> amounts = new TreeMap<>();
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Credit credit : credits) {
+            amounts.merge(credit.memberId(), credit.amount(), BigDecimal::add);
+            counts.merge(credit.memberId(), 1, Integer::sum);
+        }
+
+        // Sorted by member, the same lock order as apply()
+        Date month = Date.valueOf(YearMonth.from(postedAt).atDay(1));
+        List<Object[]> rows = new ArrayList<>(amounts.size());
+        amounts.forEach((memberId, amount) ->
+                rows.add(new Object[]{memberId, month, type.name(), amount, counts.get(memberId), BigDecimal.ZERO, 0}));
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+    }
+
+    /**
+     * Income and expenses of the member in the month, as {income, expenses}
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal[] getMonthlyTotals(Long memberId, YearMonth month) {
+        Object[] totals = memberMonthlyStatRepository.sumForMonth(memberId, month.atDay(1)).get(0);
+        return new BigDecimal[]{(BigDecimal) totals[0], (BigDecimal) totals[1]};
+    }
+
+    /**
+     * Recompute the rollup from the transactions table, from the given month on (everything when null).
+     * Months that have been archived are kept as they are, since their transactions are no longer there.
+     * Members are rebuilt a range at a time, each range in a transaction of its own; postings wait on
+     * the table lock only while one range is rebuilt and are then applied on top of it.
+     */
+    public int rebuild(YearMonth fromMonth) {
+        LocalDate from = fromMonth != null ? fromMonth.atDay(1) : LocalDate.of(1970, 1, 1);
+        LocalDateTime lastArchivedAt = transactionArchiveService.getLastArchivedAt();
+        if (lastArchivedAt != null && !from.isAfter(lastArchivedAt.toLocalDate())) {
+            from = YearMonth.from(lastArchivedAt).plusMonths(1).atDay(1);
+            log.info("Member monthly stats before {} are kept: those months are archived", from);
+        }
+
+        Map<String, Object> members = jdbcTemplate.queryForMap("SELECT MIN(id) AS first, MAX(id) AS last FROM members");
+        if (members.get("first") == null) {
+            return 0;
+        }
+        long first = ((Number) members.get("first")).longValue();
+        long last = ((Number) members.get("last")).longValue();
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDate since = from;
+        int inserted = 0;
+        for (long start = first; start <= last; start += rebuildBatchMembers) {
+            long rangeStart = start;
+            long rangeEnd = Math.min(start + rebuildBatchMembers - 1, last);
+            Integer rows = transaction.execute(status -> rebuildRange(since, rangeStart, rangeEnd));
+            inserted += rows != null ? rows : 0;
+        }
+
+        log.info("Rebuilt member monthly stats from {}: {} rows", from, inserted);
+        return inserted;
+    }
+
+    private int rebuildRange(LocalDate from, long firstMemberId, long lastMemberId) {
+        // Keeps postings from upserting rows between the delete and the insert; held for one range only
+        jdbcTemplate.execute("LOCK TABLE member_monthly_stats IN EXCLUSIVE MODE");
+        jdbcTemplate.update("DELETE FROM member_monthly_stats WHERE month >= ? AND member_id BETWEEN ? AND ?",
+                Date.valueOf(from), firstMemberId, lastMemberId);
+        Timestamp since = Timestamp.valueOf(from.atStartOfDay());
+        Long[] hotAccountIds = hotAccountService.getShardedAccountIds().toArray(Long[]::new);
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REBUILD_SQL);
+            Array excluded = connection.createArrayOf("bigint", hotAccountIds);
+            statement.setLong(1, firstMemberId);
+            statement.setLong(2, lastMemberId);
+            statement.setTimestamp(3, since);
+            statement.setArray(4, excluded);
+            statement.setLong(5, firstMemberId);
+            statement.setLong(6, lastMemberId);
+            statement.setTimestamp(7, since);
+            statement.setArray(8, excluded);
+            return statement;
+        });
+    }
+
+    /**
+     * Build the rollup the first time, when there are transactions but no stats yet. Run through
+     * {@link ScheduledJobs#backfillMemberStats}, so one node does it once for the cluster.
+     *
+     * @return number of rows built
+     */
+    public int backfillIfEmpty() {
+        if (memberMonthlyStatRepository.count() == 0
+                && Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM transactions)", Boolean.class))) {
+            return rebuild(null);
+        }
+        return 0;
+    }
+
+    private void apply(Collection<Transaction> transactions, int sign) {
+        List<Object[]> rows = new ArrayList<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            Date month = Date.valueOf(YearMonth.from(transaction.getCreatedAt()).atDay(1));
+            BigDecimal amount = sign > 0 ? transaction.getAmount() : transaction.getAmount().negate();
+            String type = transaction.getTransactionType().name();
+
+            Long toMember = memberOf(transaction.getToAccount());
+            if (toMember != null) {
+                rows.add(new Object[]{toMember, month, type, amount, sign, BigDecimal.ZERO, 0});
+            }
+            Long fromMember = memberOf(transaction.getFromAccount());
+            if (fromMember != null) {
+                rows.add(new Object[]{fromMember, month, type, BigDecimal.ZERO, 0, amount, sign});
+            }
+        }
+        if (!rows.isEmpty()) {
+            // Same lock order in every transaction, so concurrent postings between two members cannot deadlock
+            rows.sort(Comparator.comparing((Object[] row) -> (Long) row[0])
+                    .thenComparing(row -> (Date) row[1])
+                    .thenComparing(row -> (String) row[2]));
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+    }
+
+    public record Credit(Long memberId, BigDecimal amount) {
+    }
+
+    // Resolved from the directory, so account references are not loaded just to find their owner.
+    // Hot pool accounts are left out: their owner's row would become the contention point the slots avoid.
+    private Long memberOf(Account account) {
+        if (account == null || hotAccountService.isSharded(account.getId())) {
+            return null;
+        }
+        return accountDirectory.findById(account.getId())
+                .map(AccountDirectory.AccountInfo::getMemberId)
+                .orElse(null);
+    }
+}
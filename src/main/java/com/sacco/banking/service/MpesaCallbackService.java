@@ -0,0 +1,247 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.enums.TransactionStatus;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Settles M-Pesa transfers from STK results. Callbacks are acknowledged immediately and buffered;
+ * a flusher applies them in batches (one statement for all settlements, one for all failures, then
+ * the reversals). Transfers whose callback never arrives are resolved by polling the STK status.
+ * Callbacks must carry the deployment's secret path token, and a reported failure is confirmed with
+ * a status query before anything is reversed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MpesaCallbackService {
+
+    private static final String SETTLE_SQL =
+            "UPDATE transactions t SET status = 'COMPLETED', " +
+            "mpesa_receipt_number = v.receipt_number, processed_at = ?, updated_at = ? " +
+            "FROM unnest(?::text[], ?::text[]) AS v(checkout_request_id, receipt_number) " +
+            "WHERE t.checkout_request_id = v.checkout_request_id AND t.status = 'PROCESSING' " +
+            "RETURNING t.from_account_id";
+
+    // A settlement moves no balance but changes what the member sees, so it versions the source
+    // account like a balance change; rows are locked in id order, as transfers lock them
+    private static final String TOUCH_SQL =
+            "UPDATE accounts SET updated_date = ? WHERE id IN " +
+            "(SELECT id FROM accounts WHERE id = ANY (?) ORDER BY id FOR UPDATE)";
+
+    private static final String FAIL_SQL =
+            "UPDATE transactions t SET status = 'FAILED', failure_reason = LEFT(v.reason, 255), " +
+            "processed_at = ?, updated_at = ? " +
+            "FROM unnest(?::text[], ?::text[]) AS v(checkout_request_id, reason) " +
+            "WHERE t.checkout_request_id = v.checkout_request_id AND t.status = 'PROCESSING' " +
+            "RETURNING t.id, t.created_at";
+
+    private final TransactionRepository transactionRepository;
+    private final LedgerService ledgerService;
+    private final MpesaService mpesaService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${mpesa.callback-token:}")
+    private String callbackToken;
+
+    @Value("${mpesa.callback.batch-size:200}")
+    private int batchSize;
+
+    @Value("${mpesa.processing-timeout-minutes:5}")
+    private long processingTimeoutMinutes;
+
+    private final BlockingQueue<StkOutcome> pending = new LinkedBlockingQueue<>(10_000);
+
+    @PostConstruct
+    void checkCallbackToken() {
+        if (callbackToken == null || callbackToken.isBlank()) {
+            log.warn("mpesa.callback-token is not set: STK callbacks are refused and transfers settle by status polling only");
+        }
+    }
+
+    /**
+     * Whether the token of a callback's URL is this deployment's secret
+     */
+    public boolean isCallbackAuthentic(String token) {
+        return callbackToken != null && !callbackToken.isBlank() && token != null
+                && MessageDigest.isEqual(callbackToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Take an STK result reported by a callback. A failure is only applied as confirmed by a status
+     * query; without an answer the transfer stays PROCESSING for the status poller.
+     */
+    public void acceptCallback(StkOutcome outcome) {
+        if (outcome.checkoutRequestId() == null) {
+            return;
+        }
+        if (outcome.success()) {
+            accept(outcome);
+            return;
+        }
+        mpesaService.queryStkStatus(outcome.checkoutRequestId())
+                .flatMap(response -> toOutcome(outcome.checkoutRequestId(), response))
+                .subscribe(this::accept, e -> log.debug("STK status query for {} failed: {}",
+                        outcome.checkoutRequestId(), e.getMessage()));
+    }
+
+    /**
+     * Queue an STK result for the next flush. When the buffer is full the result is applied right away.
+     */
+    public void accept(StkOutcome outcome) {
+        if (outcome.checkoutRequestId() == null) {
+            return;
+        }
+        if (!pending.offer(outcome)) {
+            apply(List.of(outcome));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mpesa.callback.flush-interval-ms:500}")
+    public void flush() {
+        List<StkOutcome> batch = new ArrayList<>(batchSize);
+        while (pending.drainTo(batch, batchSize) > 0) {
+            try {
+                apply(batch);
+            } catch (Exception e) {
+                // Lost outcomes are recovered by the status poller once the transfers time out
+                log.error("Failed to apply {} M-Pesa results", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Query the STK status of transfers that have been PROCESSING longer than the timeout. Transfers
+     * without a CheckoutRequestID cannot be queried; they wait for operator review.
+     */
+    @Scheduled(fixedDelayString = "${mpesa.status-poll-interval-ms:60000}")
+    public void pollStuckTransfers() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(processingTimeoutMinutes);
+        List<String> checkoutRequestIds = transactionRepository
+                .findTop50ByTransactionTypeAndStatusAndCreatedAtBeforeAndCheckoutRequestIdIsNotNullOrderByCreatedAtAsc(
+                        TransactionType.MPESA_WITHDRAWAL, TransactionStatus.PROCESSING, cutoff)
+                .stream()
+                .map(Transaction::getCheckoutRequestId)
+                .toList();
+        if (checkoutRequestIds.isEmpty()) {
+            return;
+        }
+
+        log.info("Querying STK status of {} M-Pesa transfers still processing", checkoutRequestIds.size());
+        Flux.fromIterable(checkoutRequestIds)
+                .flatMap(checkoutRequestId -> mpesaService.queryStkStatus(checkoutRequestId)
+                        .flatMap(response -> toOutcome(checkoutRequestId, response))
+                        .onErrorResume(e -> {
+                            // Typically "still being processed"; try again on the next poll
+                            log.debug("STK status query for {} failed: {}", checkoutRequestId, e.getMessage());
+                            return Mono.empty();
+                        }), 4)
+                .subscribe(this::accept);
+    }
+
+    private void apply(List<StkOutcome> outcomes) {
+        List<String> settledIds = new ArrayList<>();
+        List<String> receiptNumbers = new ArrayList<>();
+        List<String> failedIds = new ArrayList<>();
+        List<String> reasons = new ArrayList<>();
+        for (StkOutcome outcome : outcomes) {
+            if (outcome.success()) {
+                settledIds.add(outcome.checkoutRequestId());
+                receiptNumbers.add(outcome.receiptNumber());
+            } else {
+                failedIds.add(outcome.checkoutRequestId());
+                reasons.add(outcome.resultDescription());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            List<Long> settledAccountIds = settledIds.isEmpty() ? List.of() : jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SETTLE_SQL);
+                statement.setTimestamp(1, now);
+                statement.setTimestamp(2, now);
+                statement.setArray(3, textArray(connection, settledIds));
+                statement.setArray(4, textArray(connection, receiptNumbers));
+                return statement;
+            }, (rs, rowNum) -> rs.getLong(1));
+            if (!settledAccountIds.isEmpty()) {
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(TOUCH_SQL);
+                    statement.setTimestamp(1, now);
+                    statement.setArray(2, connection.createArrayOf("bigint", settledAccountIds.toArray()));
+                    return statement;
+                });
+                eventPublisher.publishEvent(new AccountsChangedEvent(Set.copyOf(settledAccountIds)));
+            }
+
+            List<Object[]> failedKeys = failedIds.isEmpty() ? List.of() : jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(FAIL_SQL);
+                statement.setTimestamp(1, now);
+                statement.setTimestamp(2, now);
+                statement.setArray(3, textArray(connection, failedIds));
+                statement.setArray(4, textArray(connection, reasons));
+                return statement;
+            }, (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getTimestamp(2).toLocalDateTime()});
+
+            // Compensate the debits of failed transfers, looked up in their partitions only
+            if (!failedKeys.isEmpty()) {
+                transactionRepository.findByIdInAndCreatedAtIn(
+                        failedKeys.stream().map(key -> (Long) key[0]).toList(),
+                        failedKeys.stream().map(key -> (LocalDateTime) key[1]).toList())
+                        .forEach(ledgerService::reverse);
+            }
+
+            log.info("Applied M-Pesa results: {} settled, {} failed and reversed", settledAccountIds.size(), failedKeys.size());
+        });
+    }
+
+    private Mono<StkOutcome> toOutcome(String checkoutRequestId, Map<String, Object> response) {
+        Object resultCode = response.get("ResultCode");
+        if (resultCode == null) {
+            return Mono.empty();
+        }
+        boolean success = "0".equals(resultCode.toString());
+        return Mono.just(new StkOutcome(checkoutRequestId, success, null, (String) response.get("ResultDesc")));
+    }
+
+    private Array textArray(Connection connection, List<String> values) throws SQLException {
+        return connection.createArrayOf("text", values.toArray());
+    }
+
+    /**
+     * Result of one STK push, from a callback or a status query
+     */
+    public record StkOutcome(String checkoutRequestId, boolean success, String receiptNumber, String resultDescription) {
+    }
+}
@@ -7,8 +7,11 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Base64;
@@ -24,75 +27,102 @@ public class MpesaService {
     @Value("${mpesa.api-url}")
     private String mpesaApiUrl;
 
-    @Value("${mpesa.consumer-key}")
-    private String consumerKey;
-
-    @Value("${mpesa.consumer-secret}")
-    private String consumerSecret;
-
     @Value("${mpesa.passkey}")
     private String passkey;
 
     @Value("${mpesa.shortcode}")
     private String shortcode;
 
-    private final WebClient webClient;
+    @Value("${mpesa.callback-url}")
+    private String callbackUrl;
 
-    public String sendMoney(String phoneNumber, BigDecimal amount, String description) {
-        try {
-            // Get access token
-            String accessToken = getAccessToken();
-
-            // Prepare STK push request
-            Map<String, Object> stkPushRequest = prepareStkPushRequest(phoneNumber, amount, description);
-
-            // Make STK push request
-            Map<String, Object> response = webClient.post()
-                    .uri(mpesaApiUrl + "/mpesa/stkpush/v1/processrequest")
-                    .header("Authorization", "Bearer " + accessToken)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(stkPushRequest)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                    .block();
-
-            if (response != null && "0".equals(response.get("ResponseCode"))) {
-                return (String) response.get("CheckoutRequestID");
-            } else {
-                throw new RuntimeException("M-Pesa transaction failed: " + response);
-            }
-
-        } catch (Exception e) {
-            log.error("M-Pesa transaction failed", e);
-            throw new RuntimeException("M-Pesa transaction failed: " + e.getMessage());
-        }
-    }
+    @Value("${mpesa.callback-token:}")
+    private String callbackToken;
+
+    @Value("${mpesa.timeout-seconds:30}")
+    private long timeoutSeconds;
 
+    private final WebClient webClient;
+    private final MpesaTokenManager mpesaTokenManager;
+
+    /**
+     * Non-blocking STK push: nothing waits on a thread (or holds a DB connection) while Safaricom responds.
+     *
+     * @return the CheckoutRequestID of the accepted request; fails with {@link RejectedException} only
+     * when Safaricom definitely did not take it
+     */
+    public Mono<String> sendMoneyAsync(String phoneNumber, BigDecimal amount, String description) {
+        return mpesaTokenManager.getAccessToken()
+                // Without a token nothing was sent
+                .onErrorMap(e -> new RejectedException("M-Pesa access token unavailable: " + e.getMessage()))
+                .flatMap(accessToken -> webClient.post()
+                        .uri(mpesaApiUrl + "/mpesa/stkpush/v1/processrequest")
+                        .header("Authorization", "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(prepareStkPushRequest(phoneNumber, amount, description))
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                        .onErrorMap(WebClientResponseException.class, e -> e.getStatusCode().is4xxClientError()
+                                ? new RejectedException("M-Pesa request rejected: " + e.getStatusCode().value() + " " + e.getResponseBodyAsString())
+                                : e))
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .flatMap(response -> {
+                    Object responseCode = response.get("ResponseCode");
+                    if (responseCode != null && !"0".equals(responseCode.toString())) {
+                        return Mono.<String>error(new RejectedException("M-Pesa transaction failed: " + response));
+                    }
+                    Object checkoutRequestId = response.get("CheckoutRequestID");
+                    return checkoutRequestId != null
+                            ? Mono.just(checkoutRequestId.toString())
+                            : Mono.<String>error(new IllegalStateException("M-Pesa response without CheckoutRequestID: " + response));
+                })
+                .switchIfEmpty(Mono.error(new IllegalStateException("M-Pesa transaction failed: empty response")))
+                .doOnError(e -> log.error("M-Pesa transaction failed", e));
+    }
 
-    private String getAccessToken() {
-        String credentials = consumerKey + ":" + consumerSecret;
-        String encodedCredentials = Base64.getEncoder().encodeToString(credentials.getBytes());
+    /**
+     * Ask Safaricom for the outcome of an STK push whose callback has not arrived.
+     *
+     * @return the query response; ResultCode "0" means the payment went through
+     */
+    public Mono<Map<String, Object>> queryStkStatus(String checkoutRequestId) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
 
-        Map<String, Object> response = webClient.get()
-                .uri(mpesaApiUrl + "/oauth/v1/generate?grant_type=client_credentials")
-                .header("Authorization", "Basic " + encodedCredentials)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .block();
+        Map<String, Object> query = new HashMap<>();
+        query.put("BusinessShortCode", shortcode);
+        query.put("Password", password(timestamp));
+        query.put("Timestamp", timestamp);
+        query.put("CheckoutRequestID", checkoutRequestId);
+
+        return mpesaTokenManager.getAccessToken()
+                .flatMap(accessToken -> webClient.post()
+                        .uri(mpesaApiUrl + "/mpesa/stkpushquery/v1/query")
+                        .header("Authorization", "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(query)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
+                .timeout(Duration.ofSeconds(timeoutSeconds));
+    }
 
-        if (response == null || response.get("access_token") == null) {
-            throw new RuntimeException("Failed to retrieve access token from M-Pesa API");
+    /**
+     * Safaricom definitely did not take the request: it was refused (HTTP 4xx or an error
+     * ResponseCode) or never sent. Any other failure, such as a timeout or a reset connection,
+     * leaves the outcome unknown.
+     */
+    public static class RejectedException extends RuntimeException {
+        public RejectedException(String message) {
+            super(message);
         }
-
-        return (String) response.get("access_token");
     }
 
+    private String password(String timestamp) {
+        return Base64.getEncoder().encodeToString((shortcode + passkey + timestamp).getBytes());
+    }
 
     private Map<String, Object> prepareStkPushRequest(String phoneNumber, BigDecimal amount, String description) {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        String password = Base64.getEncoder().encodeToString(
-                (shortcode + passkey + timestamp).getBytes()
-        );
+        String password = password(timestamp);
 
         Map<String, Object> request = new HashMap<>();
         request.put("BusinessShortCode", shortcode);
@@ -103,7 +133,7 @@ public class MpesaService {
         request.put("PartyA", phoneNumber);
         request.put("PartyB", shortcode);
         request.put("PhoneNumber", phoneNumber);
-        request.put("CallBackURL", "https://your-callback-url.com/mpesa/callback");
+        request.put("CallBackURL", callbackUrl + "/" + callbackToken);
         request.put("AccountReference", "SACCO-" + UUID.randomUUID().toString().substring(0, 8));
         request.put("TransactionDesc", description);
 
@@ -0,0 +1,144 @@
+package com.sacco.banking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches the M-Pesa OAuth access token until shortly before it expires and renews it in the
+ * background, so payouts do not pay for a token round trip. Concurrent refreshes share one call.
+ */
+@Service
+@Slf4j
+public class MpesaTokenManager {
+
+    private final WebClient webClient;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refreshes;
+    private final Counter refreshFailures;
+
+    @Value("${mpesa.api-url}")
+    private String mpesaApiUrl;
+
+    @Value("${mpesa.consumer-key}")
+    private String consumerKey;
+
+    @Value("${mpesa.consumer-secret}")
+    private String consumerSecret;
+
+    // A token is no longer handed out this close to its expiry
+    @Value("${mpesa.token.expiry-margin-seconds:60}")
+    private long expiryMarginSeconds;
+
+    // The background refresh renews tokens that expire within this window
+    @Value("${mpesa.token.refresh-ahead-seconds:300}")
+    private long refreshAheadSeconds;
+
+    private volatile CachedToken currentToken;
+
+    private final AtomicReference<Mono<CachedToken>> refreshInFlight = new AtomicReference<>();
+
+    public MpesaTokenManager(WebClient webClient, MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.hits = meterRegistry.counter("mpesa.token.requests", "result", "hit");
+        this.misses = meterRegistry.counter("mpesa.token.requests", "result", "miss");
+        this.refreshes = meterRegistry.counter("mpesa.token.refreshes", "outcome", "success");
+        this.refreshFailures = meterRegistry.counter("mpesa.token.refreshes", "outcome", "failure");
+    }
+
+    public Mono<String> getAccessToken() {
+        CachedToken token = currentToken;
+        if (token != null && token.isValidFor(Duration.ofSeconds(expiryMarginSeconds))) {
+            hits.increment();
+            return Mono.just(token.value());
+        }
+
+        misses.increment();
+        return refresh().map(CachedToken::value);
+    }
+
+    /**
+     * Renew the token ahead of expiry. Only runs once a token has been used, so an unconfigured
+     * M-Pesa integration does not keep calling Safaricom.
+     */
+    @Scheduled(fixedDelayString = "${mpesa.token.refresh-check-interval-ms:60000}")
+    public void refreshIfExpiring() {
+        CachedToken token = currentToken;
+        if (token == null || token.isValidFor(Duration.ofSeconds(refreshAheadSeconds))) {
+            return;
+        }
+        refresh().subscribe(
+                refreshed -> log.debug("M-Pesa access token refreshed ahead of expiry"),
+                error -> log.warn("Background M-Pesa token refresh failed: {}", error.getMessage())
+        );
+    }
+
+    private Mono<CachedToken> refresh() {
+        while (true) {
+            Mono<CachedToken> running = refreshInFlight.get();
+            if (running != null) {
+                return running;
+            }
+
+            Mono<CachedToken> refresh = requestToken()
+                    .doOnNext(token -> {
+                        currentToken = token;
+                        refreshes.increment();
+                    })
+                    .doOnError(error -> refreshFailures.increment())
+                    .doFinally(signal -> refreshInFlight.set(null))
+                    .cache();
+
+            // Only the registered refresh is ever subscribed; a caller that lost the race joins the winner
+            if (refreshInFlight.compareAndSet(null, refresh)) {
+                return refresh;
+            }
+        }
+    }
+
+    private Mono<CachedToken> requestToken() {
+        String credentials = consumerKey + ":" + consumerSecret;
+        String encodedCredentials = Base64.getEncoder().encodeToString(credentials.getBytes());
+
+        return webClient.get()
+                .uri(mpesaApiUrl + "/oauth/v1/generate?grant_type=client_credentials")
+                .header("Authorization", "Basic " + encodedCredentials)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .filter(response -> response.get("access_token") != null)
+                .map(response -> new CachedToken(
+                        (String) response.get("access_token"),
+                        Instant.now().plusSeconds(expiresIn(response))))
+                .switchIfEmpty(Mono.error(new RuntimeException("Failed to retrieve access token from M-Pesa API")));
+    }
+
+    private long expiresIn(Map<String, Object> response) {
+        // Safaricom returns expires_in as a string of seconds
+        Object expiresIn = response.get("expires_in");
+        try {
+            return expiresIn != null ? Long.parseLong(expiresIn.toString().trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private record CachedToken(String value, Instant expiresAt) {
+
+        boolean isValidFor(Duration margin) {
+            return Instant.now().plus(margin).isBefore(expiresAt);
+        }
+    }
+}
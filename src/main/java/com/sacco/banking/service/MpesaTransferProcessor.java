@@ -0,0 +1,101 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Second half of an M-Pesa transfer. The debit and the PROCESSING transaction are already committed;
+ * the Safaricom call runs without a thread or connection waiting on it, and its outcome is applied
+ * in a short transaction of its own: an accepted push records its CheckoutRequestID and waits for
+ * the callback, a rejected one is reversed. When the call fails without a definite answer (a timeout
+ * or a reset connection) the push may still have gone through, so the transfer stays PROCESSING.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MpesaTransferProcessor {
+
+    private static final int RECORD_ATTEMPTS = 3;
+
+    private final MpesaService mpesaService;
+    private final TransactionRepository transactionRepository;
+    private final LedgerService ledgerService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * @param createdAt creation time of the transaction, which locates its partition
+     */
+    public void dispatch(Long transactionId, LocalDateTime createdAt, String phoneNumber, BigDecimal amount, String description) {
+        mpesaService.sendMoneyAsync(phoneNumber, amount, description)
+                // Database work must not run on the HTTP client's event loop
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(
+                        checkoutRequestId -> accepted(transactionId, createdAt, checkoutRequestId),
+                        error -> fail(transactionId, createdAt, error)
+                );
+    }
+
+    private void accepted(Long transactionId, LocalDateTime createdAt, String checkoutRequestId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // The push was only accepted: the transfer settles when Safaricom reports the result
+                transactionTemplate.executeWithoutResult(status ->
+                        transactionRepository.recordCheckoutRequest(transactionId, createdAt, checkoutRequestId, LocalDateTime.now()));
+                log.info("M-Pesa transfer {} accepted with checkout request {}", transactionId, checkoutRequestId);
+                return;
+            } catch (Exception e) {
+                if (attempt == RECORD_ATTEMPTS) {
+                    // Its callback cannot be matched now; the operator settles it with this id
+                    log.error("Failed to record checkout request {} of M-Pesa transfer {}; it needs operator review",
+                            checkoutRequestId, transactionId, e);
+                    return;
+                }
+                log.warn("Failed to record checkout request of M-Pesa transfer {}, retrying: {}", transactionId, e.getMessage());
+            }
+        }
+    }
+
+    private void fail(Long transactionId, LocalDateTime createdAt, Throwable error) {
+        if (!(error instanceof MpesaService.RejectedException)) {
+            log.error("Outcome of M-Pesa transfer {} is unknown, leaving it PROCESSING for operator review: {}",
+                    transactionId, error.getMessage());
+            return;
+        }
+        try {
+            failTransfer(transactionId, createdAt, error.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to reverse M-Pesa transfer {}", transactionId, e);
+        }
+    }
+
+    /**
+     * Mark a PROCESSING transfer FAILED and reverse its ledger postings in one short transaction.
+     * Does nothing if the transfer was already settled by someone else.
+     *
+     * @return true when this call failed the transfer
+     */
+    public boolean failTransfer(Long transactionId, LocalDateTime createdAt, String reason) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (transactionRepository.markFailedIfProcessing(transactionId, createdAt, truncate(reason), LocalDateTime.now()) == 0) {
+                return false;
+            }
+            Transaction transaction = transactionRepository.findByIdAndCreatedAt(transactionId, createdAt).orElseThrow();
+            // Compensate the committed debit
+            ledgerService.reverse(transaction);
+            log.warn("M-Pesa transfer {} failed and was reversed: {}", transaction.getTransactionId(), reason);
+            return true;
+        }));
+    }
+
+    private String truncate(String reason) {
+        return reason != null && reason.length() > 255 ? reason.substring(0, 255) : reason;
+    }
+}
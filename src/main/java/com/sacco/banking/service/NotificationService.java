@@ -12,7 +12,6 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -172,14 +171,14 @@ public class NotificationService {
         createNotification(request);
     }
 
-    @Scheduled(cron = "0 0 2 * * ?") // Every day at 2 AM
-    public void cleanupOldNotifications() {
+    public int cleanupOldNotifications() {
         LocalDateTime cutoff = LocalDateTime.now().minusDays(90);
         int deletedOld = notificationRepository.deleteOldNotifications(cutoff);
         log.info("Deleted {} old notifications", deletedOld);
 
         int deletedExpired = notificationRepository.deleteExpiredNotifications(LocalDateTime.now());
         log.info("Deleted {} expired notifications", deletedExpired);
+        return deletedOld + deletedExpired;
     }
 
     private String getTransactionNotificationTitle(String transactionType) {
@@ -10,10 +10,9 @@ import com.sacco.banking.enums.NotificationType;
 import com.sacco.banking.enums.TransactionStatus;
 import com.sacco.banking.enums.TransactionType;
 import com.sacco.banking.exception.BadRequestException;
-import com.sacco.banking.exception.InsufficientFundsException;
 import com.sacco.banking.repository.AccountRepository;
 import com.sacco.banking.repository.SavingsGoalRepository;
-import com.sacco.banking.repository.TransactionRepository;
+import com.sacco.banking.util.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -22,7 +21,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,7 +30,9 @@ public class SavingsService {
 
     private final SavingsGoalRepository savingsGoalRepository;
     private final AccountRepository accountRepository;
-    private final TransactionRepository transactionRepository;
+    private final AccountDirectory accountDirectory;
+    private final LedgerService ledgerService;
+    private final IdGenerator idGenerator;
     private final NotificationHelper notificationHelper; // Add notification helper
 
     @Transactional(readOnly = true)
@@ -79,48 +79,43 @@ public class SavingsService {
 
     @Transactional
     public TransactionResponse makeSavingsDeposit(SavingsDepositRequest request, Member member) {
-        Account fromAccount = accountRepository.findByAccountNumber(request.getFromAccountNumber())
-                .orElseThrow(() -> new BadRequestException("Source account not found"));
-
-        // Use the method that returns Optional<Account>
-        Account savingsAccount = accountRepository.findFirstByMemberAndAccountType(member, AccountType.SAVINGS)
+        AccountDirectory.AccountInfo fromAccount = accountDirectory.require(request.getFromAccountNumber(), "Source account not found");
+        AccountDirectory.AccountInfo savingsAccount = accountDirectory.findFirstOfType(member, AccountType.SAVINGS)
                 .orElseThrow(() -> new BadRequestException("Savings account not found"));
 
-        // Verify ownership
-        if (!fromAccount.getMember().getId().equals(member.getId())) {
+        // Verify ownership and status
+        if (!fromAccount.isOwnedBy(member)) {
             throw new BadRequestException("You don't own the source account");
         }
+        if (!fromAccount.isActive()) {
+            throw new BadRequestException("Source account is not active");
+        }
+        if (!savingsAccount.isActive()) {
+            throw new BadRequestException("Savings account is not active");
+        }
 
         // Validate amount
         if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new BadRequestException("Deposit amount must be greater than zero");
         }
 
-        // Check balance (considering minimum balance)
-        BigDecimal availableBalance = fromAccount.getBalance().subtract(fromAccount.getMinimumBalance());
-        if (availableBalance.compareTo(request.getAmount()) < 0) {
-            throw new InsufficientFundsException("Insufficient funds. Available balance: " + availableBalance);
-        }
-
         // Create transaction
         Transaction transaction = new Transaction();
-        transaction.setTransactionId(generateTransactionId());
+        transaction.setTransactionId(idGenerator.nextTransactionId("SAV"));
         transaction.setTransactionType(TransactionType.SAVINGS_DEPOSIT);
         transaction.setAmount(request.getAmount());
         transaction.setFee(BigDecimal.ZERO);
         transaction.setDescription("Savings deposit" + (request.getReference() != null ? " - " + request.getReference() : ""));
         transaction.setReference(request.getReference());
-        transaction.setFromAccount(fromAccount);
-        transaction.setToAccount(savingsAccount);
+        transaction.setFromAccount(accountRepository.getReferenceById(fromAccount.getId()));
+        transaction.setToAccount(accountRepository.getReferenceById(savingsAccount.getId()));
         transaction.setStatus(TransactionStatus.COMPLETED);
         transaction.setCreatedAt(LocalDateTime.now());
 
-        // Update balances
-        fromAccount.setBalance(fromAccount.getBalance().subtract(request.getAmount()));
-        fromAccount.setUpdatedDate(LocalDateTime.now());
-
-        savingsAccount.setBalance(savingsAccount.getBalance().add(request.getAmount()));
-        savingsAccount.setUpdatedDate(LocalDateTime.now());
+        // Guarded debit (considering minimum balance), credit and journal entries; the debit raises
+        // the low-balance alert when it leaves the account near its minimum
+        Transaction savedTransaction = ledgerService.post(transaction, BalanceMutationService.Floor.MINIMUM_BALANCE,
+                "Insufficient funds. The source account must keep its minimum balance of " + fromAccount.getMinimumBalance());
 
         SavingsGoal updatedGoal = null;
         boolean goalCompleted = false;
@@ -191,11 +186,6 @@ public class SavingsService {
             }
         }
 
-        // Save changes
-        accountRepository.save(fromAccount);
-        accountRepository.save(savingsAccount);
-        Transaction savedTransaction = transactionRepository.save(transaction);
-
         // Send deposit notification
         String depositMessage = String.format("You've successfully deposited KSH %.2f to your savings account.",
                 request.getAmount().doubleValue());
@@ -211,19 +201,10 @@ public class SavingsService {
                 1
         );
 
-        // Check for low balance warning on source account
-        if (fromAccount.getBalance().compareTo(fromAccount.getMinimumBalance().multiply(new BigDecimal("1.1"))) <= 0) {
-            notificationHelper.notifyLowBalance(
-                    member.getMemberNumber(),
-                    fromAccount.getAccountType().name(),
-                    fromAccount.getBalance().doubleValue()
-            );
-        }
-
         log.info("Savings deposit of {} completed for member {} from account {} to savings account",
                 request.getAmount(), member.getMemberNumber(), fromAccount.getAccountNumber());
 
-        return TransactionResponse.fromEntity(savedTransaction);
+        return TransactionResponse.fromEntity(savedTransaction, fromAccount.getAccountNumber(), savingsAccount.getAccountNumber());
     }
 
     @Transactional
@@ -373,8 +354,4 @@ public class SavingsService {
 
         log.info("Checked {} savings goals for deadline reminders", approachingGoals.size());
     }
-
-    private String generateTransactionId() {
-        return "SAV-" + System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
-    }
 }
\ No newline at end of file
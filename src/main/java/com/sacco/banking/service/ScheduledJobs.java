@@ -0,0 +1,97 @@
+package com.sacco.banking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.function.LongSupplier;
+
+/**
+ * Scheduled jobs that must run once across the cluster, not once per node. Every node fires them;
+ * {@link JobCoordinator} lets one node run each occurrence, and failed or abandoned occurrences
+ * are retried here until one completes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduledJobs {
+
+    private static final String MONTHLY_INTEREST = "monthly-interest";
+    private static final String ACCRUAL_RECONCILE = "accrual-reconcile";
+    private static final String LOW_BALANCE_SWEEP = "low-balance-sweep";
+    private static final String NOTIFICATION_CLEANUP = "notification-cleanup";
+    private static final String IDEMPOTENCY_CLEANUP = "idempotency-cleanup";
+    private static final String MEMBER_STATS_BACKFILL = "member-stats-backfill";
+
+    private final JobCoordinator jobCoordinator;
+    private final AccountService accountService;
+    private final NotificationService notificationService;
+    private final IdempotencyService idempotencyService;
+    private final InterestAccrualService interestAccrualService;
+    private final MemberStatsService memberStatsService;
+
+    // Other nodes join the run's chunks through InterestPostingService.joinRunning
+    @Scheduled(cron = "0 0 0 1 * ?")
+    public void calculateMonthlyInterest() {
+        run(MONTHLY_INTEREST, YearMonth.now().minusMonths(1).toString());
+    }
+
+    @Scheduled(cron = "0 15 0 * * ?")
+    public void reconcileInterestAccruals() {
+        run(ACCRUAL_RECONCILE, LocalDate.now().toString());
+    }
+
+    @Scheduled(cron = "0 0 9 * * ?")
+    public void checkLowBalances() {
+        run(LOW_BALANCE_SWEEP, LocalDate.now().toString());
+    }
+
+    @Scheduled(cron = "0 0 2 * * ?") // Every day at 2 AM
+    public void cleanupOldNotifications() {
+        run(NOTIFICATION_CLEANUP, LocalDate.now().toString());
+    }
+
+    @Scheduled(cron = "0 30 2 * * ?") // Every day at 2:30 AM
+    public void cleanupExpiredIdempotencyKeys() {
+        run(IDEMPOTENCY_CLEANUP, LocalDate.now().toString());
+    }
+
+    /**
+     * Build the member stats rollup from existing transactions, once for the cluster
+     */
+    public void backfillMemberStats() {
+        run(MEMBER_STATS_BACKFILL, "initial");
+    }
+
+    /**
+     * Run again the occurrences that failed or whose node died, with their own run key
+     */
+    @Scheduled(fixedDelayString = "${jobs.retry-interval-ms:300000}")
+    public void retryUnfinished() {
+        jobCoordinator.findUnfinished().forEach(this::run);
+    }
+
+    private void run(String jobName, String runKey) {
+        LongSupplier work = work(jobName, runKey);
+        if (work == null) {
+            log.warn("No job named {} to run for {}", jobName, runKey);
+            return;
+        }
+        jobCoordinator.runOnce(jobName, runKey, work);
+    }
+
+    private LongSupplier work(String jobName, String runKey) {
+        return switch (jobName) {
+            case MONTHLY_INTEREST -> () -> accountService.calculateMonthlyInterest(YearMonth.parse(runKey));
+            case ACCRUAL_RECONCILE -> interestAccrualService::reconcile;
+            case LOW_BALANCE_SWEEP -> accountService::checkLowBalances;
+            case NOTIFICATION_CLEANUP -> notificationService::cleanupOldNotifications;
+            case IDEMPOTENCY_CLEANUP -> idempotencyService::cleanupExpiredKeys;
+            case MEMBER_STATS_BACKFILL -> memberStatsService::backfillIfEmpty;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,389 @@
+package com.sacco.banking.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sacco.banking.dto.response.TransactionResponse;
+import com.sacco.banking.enums.StatementFormat;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.exception.ResourceNotFoundException;
+import com.sacco.banking.exception.ServiceUnavailableException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Account statements streamed straight from the ledger. Entries are read through a forward-only
+ * cursor in fetch-size batches and written out as they arrive, so an export of several years holds
+ * no more than one batch in memory. The opening balance is the net of the legs before the range and
+ * each line carries the running balance after it. Descriptions of archived transactions are read
+ * from the archive, one account-month at a time. An export holds a pooled connection for as long
+ * as the client reads, so only a few run at once, and the database ends one that stalls.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatementService {
+
+    private static final LocalDate EARLIEST = LocalDate.of(1970, 1, 1);
+
+    private static final String OPENING_BALANCE_SQL =
+            "SELECT COALESCE(SUM(CASE WHEN entry_type = 'CREDIT' THEN amount ELSE -amount END), 0) " +
+            "FROM ledger_entries WHERE account_id = ? AND created_at < ?";
+
+    // Ordered by the (account_id, created_at) index, so the cursor returns rows without sorting the range first.
+    // On the partitioned table the join also matches the partition key, so each lookup reads one partition.
+    private static final String ENTRIES_SQL =
+            "SELECT e.created_at, e.entry_type, e.amount, e.transaction_type, e.transaction_ref, e.transaction_created_at, " +
+            "t.id AS live_id, t.description, t.reference " +
+            "FROM ledger_entries e LEFT JOIN transactions t ON t.id = e.transaction_id%s " +
+            "WHERE e.account_id = ? AND e.created_at >= ? AND e.created_at < ? ORDER BY e.created_at, e.id";
+
+    private final AccountDirectory accountDirectory;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionPartitionService transactionPartitionService;
+    private final TransactionArchiveService transactionArchiveService;
+
+    @Value("${statements.fetch-size:500}")
+    private int fetchSize;
+
+    @Value("${statements.statement-timeout-ms:120000}")
+    private long statementTimeoutMs;
+
+    // A client that stops reading leaves the transaction idle between fetches
+    @Value("${statements.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Value("${statements.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private Semaphore exports;
+
+    @PostConstruct
+    void init() {
+        exports = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Check access and the range up front, so errors are reported before the response starts,
+     * and return the export to be written by the response.
+     *
+     * @param fromDate first day of the statement, the start of the account's history when null
+     * @param toDate   last day of the statement (inclusive), today when null
+     */
+    public StatementExport export(String accountNumber, Long memberId, boolean admin, String format,
+                                  LocalDate fromDate, LocalDate toDate) {
+        AccountDirectory.AccountInfo account = accountDirectory.find(accountNumber)
+                .filter(info -> admin || info.getMemberId() == memberId)
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+
+        StatementFormat statementFormat = parseFormat(format);
+        LocalDate from = fromDate != null ? fromDate : EARLIEST;
+        LocalDate to = toDate != null ? toDate : LocalDate.now();
+        if (from.isAfter(to)) {
+            throw new BadRequestException("fromDate must not be after toDate");
+        }
+
+        // Taken before the response starts, so a busy server can still answer with an error status.
+        // Released once, by the body or by the caller when the response ends without running it
+        if (!exports.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many statement exports in progress, please try again shortly");
+        }
+        AtomicBoolean held = new AtomicBoolean(true);
+        Runnable release = () -> {
+            if (held.compareAndSet(true, false)) {
+                exports.release();
+            }
+        };
+
+        String fileName = "statement-" + accountNumber + "-" + (fromDate != null ? from + "-" : "") + to
+                + "." + statementFormat.getExtension();
+        StreamingResponseBody body = out -> {
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                StatementWriter statementWriter = statementFormat == StatementFormat.CSV
+                        ? new CsvStatementWriter(writer)
+                        : new NdjsonStatementWriter(objectMapper.getFactory().createGenerator(writer));
+                write(account.getId(), accountNumber, from, to, statementWriter);
+                statementWriter.flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                release.run();
+            }
+        };
+        return new StatementExport(fileName, statementFormat, body, release);
+    }
+
+    private void write(Long accountId, String accountNumber, LocalDate from, LocalDate to, StatementWriter writer) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        // One snapshot for the opening balance and the entries, so they add up even while postings land
+        transaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+
+        String entriesSql = String.format(ENTRIES_SQL,
+                transactionPartitionService.isPartitioned() ? " AND t.created_at = e.transaction_created_at" : "");
+        ArchivedTransactions archived = new ArchivedTransactions(accountId);
+
+        // The PostgreSQL driver only uses a cursor for the fetch size inside a transaction
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("SET LOCAL statement_timeout = " + statementTimeoutMs);
+            jdbcTemplate.execute("SET LOCAL idle_in_transaction_session_timeout = " + idleTimeoutMs);
+            BigDecimal opening = jdbcTemplate.queryForObject(OPENING_BALANCE_SQL, BigDecimal.class, accountId, start);
+            BigDecimal[] balance = {opening};
+            long[] lines = {0};
+
+            io(() -> writer.opening(accountNumber, from, opening));
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(entriesSql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, accountId);
+                statement.setTimestamp(2, start);
+                statement.setTimestamp(3, end);
+                return statement;
+            }, rs -> {
+                BigDecimal amount = rs.getBigDecimal("amount");
+                boolean credit = "CREDIT".equals(rs.getString("entry_type"));
+                balance[0] = credit ? balance[0].add(amount) : balance[0].subtract(amount);
+                lines[0]++;
+
+                LocalDateTime createdAt = rs.getTimestamp("created_at").toLocalDateTime();
+                String transactionRef = rs.getString("transaction_ref");
+                String description = rs.getString("description");
+                String reference = rs.getString("reference");
+                if (transactionRef != null && rs.getObject("live_id") == null) {
+                    Timestamp transactionCreatedAt = rs.getTimestamp("transaction_created_at");
+                    TransactionResponse archivedTransaction = archived.find(transactionRef,
+                            YearMonth.from(transactionCreatedAt != null ? transactionCreatedAt.toLocalDateTime() : createdAt));
+                    if (archivedTransaction != null) {
+                        description = archivedTransaction.getDescription();
+                        reference = archivedTransaction.getReference();
+                    }
+                }
+
+                StatementLine line = new StatementLine(createdAt, transactionRef, rs.getString("transaction_type"),
+                        description, reference, credit ? null : amount, credit ? amount : null, balance[0]);
+                io(() -> writer.line(line));
+            });
+            io(() -> writer.closing(accountNumber, to, balance[0]));
+
+            log.info("Exported statement of account {} from {} to {}: {} entries", accountNumber, from, to, lines[0]);
+        });
+    }
+
+    private static StatementFormat parseFormat(String format) {
+        try {
+            return StatementFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unsupported statement format: " + format);
+        }
+    }
+
+    private static void io(IoAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Archived transactions of the month the statement is in, reloaded when it moves to another month
+    private final class ArchivedTransactions {
+
+        private final Long accountId;
+        private YearMonth month;
+        private Map<String, TransactionResponse> byReference = Map.of();
+
+        ArchivedTransactions(Long accountId) {
+            this.accountId = accountId;
+        }
+
+        TransactionResponse find(String transactionRef, YearMonth transactionMonth) {
+            if (!transactionMonth.equals(month)) {
+                byReference = transactionArchiveService.findMonth(accountId, transactionMonth);
+                month = transactionMonth;
+            }
+            return byReference.get(transactionRef);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Statement ready to be streamed, with the file name it should be downloaded as. Its export slot
+     * is freed when the body finishes; run release when the response ends otherwise (timed out,
+     * aborted, or failed before the body started). Releasing twice is harmless.
+     */
+    public record StatementExport(String fileName, StatementFormat format, StreamingResponseBody body, Runnable release) {
+    }
+
+    private record StatementLine(LocalDateTime date, String transactionId, String type, String description,
+                                 String reference, BigDecimal debit, BigDecimal credit, BigDecimal balance) {
+    }
+
+    private interface StatementWriter {
+
+        void opening(String accountNumber, LocalDate date, BigDecimal balance) throws IOException;
+
+        void line(StatementLine line) throws IOException;
+
+        void closing(String accountNumber, LocalDate date, BigDecimal balance) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    // Opening and closing balances are rows of their own so the file stays one table
+    private static final class CsvStatementWriter implements StatementWriter {
+
+        private final Writer writer;
+
+        CsvStatementWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void opening(String accountNumber, LocalDate date, BigDecimal balance) throws IOException {
+            writer.write("date,transaction_id,type,description,reference,debit,credit,balance\n");
+            row(date.toString(), null, null, "Opening balance", null, null, null, balance);
+        }
+
+        @Override
+        public void line(StatementLine line) throws IOException {
+            row(line.date().toString(), line.transactionId(), line.type(), line.description(), line.reference(),
+                    line.debit(), line.credit(), line.balance());
+        }
+
+        @Override
+        public void closing(String accountNumber, LocalDate date, BigDecimal balance) throws IOException {
+            row(date.toString(), null, null, "Closing balance", null, null, null, balance);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        private void row(String date, String transactionId, String type, String description, String reference,
+                         BigDecimal debit, BigDecimal credit, BigDecimal balance) throws IOException {
+            writer.write(date);
+            writer.write(',');
+            writer.write(field(transactionId));
+            writer.write(',');
+            writer.write(field(type));
+            writer.write(',');
+            writer.write(field(description));
+            writer.write(',');
+            writer.write(field(reference));
+            writer.write(',');
+            writer.write(debit != null ? debit.toPlainString() : "");
+            writer.write(',');
+            writer.write(credit != null ? credit.toPlainString() : "");
+            writer.write(',');
+            writer.write(balance.toPlainString());
+            writer.write('\n');
+        }
+
+        // Quotes text that needs it and defuses values a spreadsheet would evaluate as a formula
+        private static String field(String value) {
+            if (value == null || value.isEmpty()) {
+                return "";
+            }
+            if ("=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                return "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            return value;
+        }
+    }
+
+    private static final class NdjsonStatementWriter implements StatementWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonStatementWriter(JsonGenerator generator) {
+            // Records are separated by the newline each one ends with, not the default space before it
+            generator.setRootValueSeparator(null);
+            this.generator = generator;
+        }
+
+        @Override
+        public void opening(String accountNumber, LocalDate date, BigDecimal balance) throws IOException {
+            balanceRecord("opening", accountNumber, date, balance);
+        }
+
+        @Override
+        public void line(StatementLine line) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("record", "entry");
+            generator.writeStringField("date", line.date().toString());
+            generator.writeStringField("transactionId", line.transactionId());
+            generator.writeStringField("type", line.type());
+            generator.writeStringField("description", line.description());
+            generator.writeStringField("reference", line.reference());
+            generator.writeFieldName("debit");
+            generator.writeNumber(line.debit());
+            generator.writeFieldName("credit");
+            generator.writeNumber(line.credit());
+            generator.writeFieldName("balance");
+            generator.writeNumber(line.balance());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void closing(String accountNumber, LocalDate date, BigDecimal balance) throws IOException {
+            balanceRecord("closing", accountNumber, date, balance);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        private void balanceRecord(String record, String accountNumber, LocalDate date, BigDecimal balance) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("record", record);
+            generator.writeStringField("accountNumber", accountNumber);
+            generator.writeStringField("date", date.toString());
+            generator.writeFieldName("balance");
+            generator.writeNumber(balance);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.sacco.banking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sacco.banking.dto.response.TransactionResponse;
+import com.sacco.banking.repository.TransactionArchiveSegmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold tier for old transactions. Once a month is older than the configured age, its finished
+ * transactions are written into compressed per-account segments and deleted from the transactions
+ * table, a few days per transaction, so the live table and its indexes only hold recent activity.
+ * History and statement reads fall back to the segments for archived months.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionArchiveService {
+
+    // Statuses that never change again; anything else stays live however old it is
+    private static final String FINAL_STATUSES = "('COMPLETED', 'FAILED', 'CANCELLED', 'REVERSED')";
+
+    // Every transaction once per account it touches, grouped by account in (created_at, id) order
+    private static final String MONTH_SQL =
+            "SELECT side.account_id, t.id, t.transaction_id, t.transaction_type, t.amount, t.fee, t.description, " +
+            "t.reference, t.status, t.mpesa_receipt_number, t.created_at, " +
+            "fa.account_number AS from_account_number, ta.account_number AS to_account_number " +
+            "FROM transactions t " +
+            "CROSS JOIN LATERAL (VALUES (t.from_account_id), " +
+            "(CASE WHEN t.to_account_id IS DISTINCT FROM t.from_account_id THEN t.to_account_id END)) AS side(account_id) " +
+            "LEFT JOIN accounts fa ON fa.id = t.from_account_id LEFT JOIN accounts ta ON ta.id = t.to_account_id " +
+            "WHERE t.created_at >= ? AND t.created_at < ? AND t.status IN " + FINAL_STATUSES +
+            " AND side.account_id IS NOT NULL " +
+            "ORDER BY side.account_id, t.created_at, t.id";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO transaction_archive_segments (id, account_id, month, seq, first_created_at, last_created_at, " +
+            "entry_count, payload, archived_at) VALUES (nextval('transaction_archive_segments_seq'), ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Serializes archiving across nodes
+    private static final long LOCK_KEY = 0x61726368L;
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private static final Comparator<TransactionResponse> NEWEST_FIRST =
+            Comparator.comparing(TransactionResponse::getCreatedAt).thenComparing(TransactionResponse::getId).reversed();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionArchiveSegmentRepository segmentRepository;
+    private final TransactionPartitionService transactionPartitionService;
+
+    @Value("${archive.transactions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${archive.transactions.age-days:365}")
+    private long ageDays;
+
+    @Value("${archive.transactions.segment-size:5000}")
+    private int segmentSize;
+
+    @Value("${archive.transactions.fetch-size:1000}")
+    private int fetchSize;
+
+    // Days of a month archived per transaction, which bounds how long each one holds its snapshot
+    @Value("${archive.transactions.batch-days:1}")
+    private int batchDays;
+
+    /**
+     * Archive every month that lies entirely beyond the configured age, oldest first
+     */
+    @Scheduled(cron = "${archive.transactions.cron:0 0 2 * * *}")
+    public void archiveDue() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth cutoff = YearMonth.from(LocalDate.now().minusDays(ageDays));
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM transactions WHERE status IN " + FINAL_STATUSES + " AND created_at < ?",
+                Timestamp.class, Timestamp.valueOf(cutoff.atDay(1).atStartOfDay()));
+        if (oldest != null) {
+            for (YearMonth month = YearMonth.from(oldest.toLocalDateTime()); month.isBefore(cutoff); month = month.plusMonths(1)) {
+                if (archiveMonth(month) < 0) {
+                    return;
+                }
+            }
+        }
+        // After the archive has committed, so the partition locks are never held for the whole run
+        int dropped = transactionPartitionService.dropEmptyBefore(cutoff);
+        if (dropped > 0) {
+            log.info("Dropped {} archived transaction partitions", dropped);
+        }
+    }
+
+    /**
+     * Move the finished transactions of the month into segments, batchDays at a time. Safe to repeat:
+     * transactions that finished after an earlier run go into further segments of the same month.
+     *
+     * @return number of transactions archived, or -1 when another node is archiving
+     */
+    public int archiveMonth(YearMonth month) {
+        int archived = 0;
+        int segments = 0;
+        LocalDate end = month.plusMonths(1).atDay(1);
+        for (LocalDate from = month.atDay(1); from.isBefore(end); from = from.plusDays(batchDays)) {
+            LocalDate until = from.plusDays(batchDays).isBefore(end) ? from.plusDays(batchDays) : end;
+            int[] batch = archiveBatch(month, from, until);
+            if (batch == null) {
+                return -1;
+            }
+            archived += batch[0];
+            segments += batch[1];
+        }
+        if (archived > 0) {
+            log.info("Archived {} transactions of {} into {} segments", archived, month, segments);
+        }
+        return archived;
+    }
+
+    /**
+     * Archive the finished transactions created in [from, until) in one transaction
+     *
+     * @return transactions archived and segments written, or null when another node is archiving
+     */
+    private int[] archiveBatch(YearMonth month, LocalDate from, LocalDate until) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        // The rows deleted are exactly the rows written, even if a status changes meanwhile
+        transaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        return transaction.execute(status -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(" + LOCK_KEY + ")", Boolean.class))) {
+                return null;
+            }
+            Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+            Timestamp end = Timestamp.valueOf(until.atStartOfDay());
+
+            SegmentWriter writer = new SegmentWriter(month);
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(MONTH_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, start);
+                statement.setTimestamp(2, end);
+                return statement;
+            }, rs -> {
+                writer.add(rs.getLong("account_id"), mapRow(rs));
+            });
+            writer.close();
+
+            int deleted = jdbcTemplate.update("DELETE FROM transactions WHERE created_at >= ? AND created_at < ? " +
+                    "AND status IN " + FINAL_STATUSES, start, end);
+            return new int[]{deleted, writer.segments};
+        });
+    }
+
+    /**
+     * Creation time of the newest archived transaction of the account; every live transaction of
+     * the account that is not older than this is missing from the archive. Null when none is archived.
+     */
+    public LocalDateTime getLastArchivedAt(Long accountId) {
+        return segmentRepository.findLastArchivedAt(accountId);
+    }
+
+    /**
+     * Creation time of the newest archived transaction of any account, null when none is archived
+     */
+    public LocalDateTime getLastArchivedAt() {
+        return segmentRepository.findLastArchivedAt();
+    }
+
+    /**
+     * Archived transactions of the account matching the filter, newest first. Only segments
+     * overlapping the bounds are read, one month at a time, until the limit is reached.
+     *
+     * @param from  earliest creation time wanted, unbounded when null
+     * @param until latest creation time wanted, unbounded when null
+     */
+    public List<TransactionResponse> findNewest(Long accountId, LocalDateTime from, LocalDateTime until,
+                                                Predicate<TransactionResponse> filter, int limit) {
+        Timestamp lower = Timestamp.valueOf(from != null ? from : EARLIEST);
+        Timestamp upper = Timestamp.valueOf(until != null ? until : LATEST);
+        List<Date> months = jdbcTemplate.queryForList(
+                "SELECT DISTINCT month FROM transaction_archive_segments " +
+                "WHERE account_id = ? AND first_created_at <= ? AND last_created_at >= ? ORDER BY month DESC",
+                Date.class, accountId, upper, lower);
+
+        List<TransactionResponse> found = new ArrayList<>();
+        for (Date month : months) {
+            // Months hold disjoint time ranges, so once the limit is reached older months cannot contribute
+            if (found.size() >= limit) {
+                break;
+            }
+            List<TransactionResponse> monthRows = new ArrayList<>();
+            jdbcTemplate.query("SELECT payload FROM transaction_archive_segments " +
+                            "WHERE account_id = ? AND month = ? AND first_created_at <= ? AND last_created_at >= ?",
+                    rs -> {
+                        for (TransactionResponse row : decode(rs.getBytes("payload"))) {
+                            if (filter.test(row)) {
+                                monthRows.add(row);
+                            }
+                        }
+                    }, accountId, month, upper, lower);
+            monthRows.sort(NEWEST_FIRST);
+            found.addAll(monthRows);
+        }
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    /**
+     * Archived transactions of the account in the month, by transaction reference
+     */
+    public Map<String, TransactionResponse> findMonth(Long accountId, YearMonth month) {
+        Map<String, TransactionResponse> byReference = new HashMap<>();
+        jdbcTemplate.query("SELECT payload FROM transaction_archive_segments WHERE account_id = ? AND month = ?",
+                rs -> {
+                    decode(rs.getBytes("payload")).forEach(row -> byReference.put(row.getTransactionId(), row));
+                }, accountId, Date.valueOf(month.atDay(1)));
+        return byReference;
+    }
+
+    private List<TransactionResponse> decode(byte[] payload) {
+        List<TransactionResponse> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(payload)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    rows.add(objectMapper.readValue(line, TransactionResponse.class));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt transaction archive segment", e);
+        }
+        return rows;
+    }
+
+    private TransactionResponse mapRow(ResultSet rs) throws SQLException {
+        return TransactionResponse.builder()
+                .id(rs.getLong("id"))
+                .transactionId(rs.getString("transaction_id"))
+                .transactionType(rs.getString("transaction_type"))
+                .amount(rs.getBigDecimal("amount"))
+                .fee(rs.getBigDecimal("fee"))
+                .description(rs.getString("description"))
+                .reference(rs.getString("reference"))
+                .fromAccountNumber(rs.getString("from_account_number"))
+                .toAccountNumber(rs.getString("to_account_number"))
+                .status(rs.getString("status"))
+                .mpesaReceiptNumber(rs.getString("mpesa_receipt_number"))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .build();
+    }
+
+    /**
+     * Cuts the ordered rows of a month into segments of at most segmentSize rows per account,
+     * holding only the segment being written in memory.
+     */
+    private final class SegmentWriter {
+
+        private final YearMonth month;
+        private long accountId = -1;
+        private int seq;
+        private int count;
+        private int segments;
+        private LocalDateTime first;
+        private LocalDateTime last;
+        private ByteArrayOutputStream bytes;
+        private GZIPOutputStream gzip;
+
+        SegmentWriter(YearMonth month) {
+            this.month = month;
+        }
+
+        void add(long rowAccountId, TransactionResponse row) {
+            try {
+                if (rowAccountId != accountId) {
+                    flush();
+                    accountId = rowAccountId;
+                    seq = nextSeq(rowAccountId);
+                } else if (count == segmentSize) {
+                    flush();
+                    seq++;
+                }
+                if (count == 0) {
+                    bytes = new ByteArrayOutputStream();
+                    gzip = new GZIPOutputStream(bytes);
+                    first = row.getCreatedAt();
+                }
+                gzip.write(objectMapper.writeValueAsBytes(row));
+                gzip.write('\n');
+                last = row.getCreatedAt();
+                count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flush() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            gzip.finish();
+            jdbcTemplate.update(INSERT_SQL, accountId, Date.valueOf(month.atDay(1)), seq, Timestamp.valueOf(first),
+                    Timestamp.valueOf(last), count, bytes.toByteArray(), Timestamp.valueOf(LocalDateTime.now()));
+            segments++;
+            count = 0;
+        }
+
+        // Continues after the segments of an earlier run for the same month
+        private int nextSeq(long rowAccountId) {
+            Integer next = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(seq) + 1, 0) FROM transaction_archive_segments WHERE account_id = ? AND month = ?",
+                    Integer.class, rowAccountId, Date.valueOf(month.atDay(1)));
+            return next != null ? next : 0;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.dto.request.TransactionHistoryRequest;
+import com.sacco.banking.dto.response.TransactionHistoryResponse;
+import com.sacco.banking.dto.response.TransactionResponse;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Transaction history of one account with keyset pagination on (created_at, id).
+ * Outgoing and incoming transactions are read as two ordered index range scans, on
+ * (from_account_id, created_at, id) and (to_account_id, created_at, id), each stopping after one
+ * page, and merged. Any page costs the same as the first, and no count query is run. Pages reaching
+ * back past the newest archived transaction are completed from the archive.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionHistoryService {
+
+    private static final Comparator<TransactionResponse> NEWEST_FIRST =
+            Comparator.comparing(TransactionResponse::getCreatedAt).thenComparing(TransactionResponse::getId).reversed();
+
+    private static final String COLUMNS = "t.id, t.transaction_id, t.transaction_type, t.amount, t.fee, t.description, " +
+            "t.reference, t.status, t.mpesa_receipt_number, t.created_at, t.from_account_id, t.to_account_id";
+
+    private final AccountDirectory accountDirectory;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionArchiveService transactionArchiveService;
+
+    public TransactionHistoryResponse getHistory(String accountNumber, Long memberId, TransactionHistoryRequest request) {
+        AccountDirectory.AccountInfo account = accountDirectory.find(accountNumber)
+                .filter(info -> info.getMemberId() == memberId)
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("accountId", account.getId())
+                .addValue("limit", request.getSize() + 1);
+        Cursor cursor = request.getCursor() != null && !request.getCursor().isBlank() ? decodeCursor(request.getCursor()) : null;
+        String filters = filters(request, cursor, params);
+
+        // The incoming branch skips rows already returned by the outgoing one
+        String sql = "SELECT p.*, fa.account_number AS from_account_number, ta.account_number AS to_account_number FROM (" +
+                "(SELECT " + COLUMNS + " FROM transactions t WHERE t.from_account_id = :accountId" + filters +
+                " ORDER BY t.created_at DESC, t.id DESC LIMIT :limit) " +
+                "UNION ALL " +
+                "(SELECT " + COLUMNS + " FROM transactions t WHERE t.to_account_id = :accountId" +
+                " AND t.from_account_id IS DISTINCT FROM :accountId" + filters +
+                " ORDER BY t.created_at DESC, t.id DESC LIMIT :limit)" +
+                ") p LEFT JOIN accounts fa ON fa.id = p.from_account_id LEFT JOIN accounts ta ON ta.id = p.to_account_id " +
+                "ORDER BY p.created_at DESC, p.id DESC LIMIT :limit";
+
+        List<TransactionResponse> rows = withArchived(account.getId(), request, cursor,
+                jdbcTemplate.query(sql, params, (rs, rowNum) -> mapRow(rs)));
+
+        boolean hasMore = rows.size() > request.getSize();
+        List<TransactionResponse> page = hasMore ? rows.subList(0, request.getSize()) : rows;
+        TransactionResponse last = page.isEmpty() ? null : page.get(page.size() - 1);
+
+        return TransactionHistoryResponse.builder()
+                .transactions(page)
+                .nextCursor(hasMore ? encodeCursor(last.getCreatedAt(), last.getId()) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // Everything archived is older than the account's last archived time, so the archive is only read
+    // when the live rows do not fill the page with newer ones
+    private List<TransactionResponse> withArchived(Long accountId, TransactionHistoryRequest request, Cursor cursor,
+                                                   List<TransactionResponse> live) {
+        int limit = request.getSize() + 1;
+        LocalDateTime lastArchivedAt = transactionArchiveService.getLastArchivedAt(accountId);
+        if (lastArchivedAt == null || (live.size() == limit && live.get(limit - 1).getCreatedAt().isAfter(lastArchivedAt))) {
+            return live;
+        }
+
+        LocalDateTime from = request.getFromDate() != null ? request.getFromDate().atStartOfDay() : null;
+        LocalDateTime until = cursor != null ? cursor.createdAt()
+                : request.getToDate() != null ? request.getToDate().plusDays(1).atStartOfDay() : null;
+        List<TransactionResponse> merged = new ArrayList<>(live);
+        merged.addAll(transactionArchiveService.findNewest(accountId, from, until, matches(request, cursor), limit));
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    // The SQL filters, applied to archived rows
+    private static Predicate<TransactionResponse> matches(TransactionHistoryRequest request, Cursor cursor) {
+        LocalDateTime from = request.getFromDate() != null ? request.getFromDate().atStartOfDay() : null;
+        LocalDateTime to = request.getToDate() != null ? request.getToDate().plusDays(1).atStartOfDay() : null;
+        return row -> (cursor == null || row.getCreatedAt().isBefore(cursor.createdAt())
+                        || (row.getCreatedAt().equals(cursor.createdAt()) && row.getId() < cursor.id()))
+                && (request.getType() == null || request.getType().name().equals(row.getTransactionType()))
+                && (from == null || !row.getCreatedAt().isBefore(from))
+                && (to == null || row.getCreatedAt().isBefore(to))
+                && (request.getMinAmount() == null || row.getAmount().compareTo(request.getMinAmount()) >= 0)
+                && (request.getMaxAmount() == null || row.getAmount().compareTo(request.getMaxAmount()) <= 0);
+    }
+
+    private String filters(TransactionHistoryRequest request, Cursor cursor, MapSqlParameterSource params) {
+        StringBuilder filters = new StringBuilder();
+        if (cursor != null) {
+            filters.append(" AND (t.created_at, t.id) < (:cursorCreatedAt, :cursorId)");
+            params.addValue("cursorCreatedAt", Timestamp.valueOf(cursor.createdAt()));
+            params.addValue("cursorId", cursor.id());
+        }
+        if (request.getType() != null) {
+            filters.append(" AND t.transaction_type = :type");
+            params.addValue("type", request.getType().name());
+        }
+        if (request.getFromDate() != null) {
+            filters.append(" AND t.created_at >= :fromDate");
+            params.addValue("fromDate", Timestamp.valueOf(request.getFromDate().atStartOfDay()));
+        }
+        if (request.getToDate() != null) {
+            filters.append(" AND t.created_at < :toDate");
+            params.addValue("toDate", Timestamp.valueOf(request.getToDate().plusDays(1).atStartOfDay()));
+        }
+        if (request.getMinAmount() != null) {
+            filters.append(" AND t.amount >= :minAmount");
+            params.addValue("minAmount", request.getMinAmount());
+        }
+        if (request.getMaxAmount() != null) {
+            filters.append(" AND t.amount <= :maxAmount");
+            params.addValue("maxAmount", request.getMaxAmount());
+        }
+        return filters.toString();
+    }
+
+    private TransactionResponse mapRow(ResultSet rs) throws SQLException {
+        return TransactionResponse.builder()
+                .id(rs.getLong("id"))
+                .transactionId(rs.getString("transaction_id"))
+                .transactionType(rs.getString("transaction_type"))
+                .amount(rs.getBigDecimal("amount"))
+                .fee(rs.getBigDecimal("fee"))
+                .description(rs.getString("description"))
+                .reference(rs.getString("reference"))
+                .fromAccountNumber(rs.getString("from_account_number"))
+                .toAccountNumber(rs.getString("to_account_number"))
+                .status(rs.getString("status"))
+                .mpesaReceiptNumber(rs.getString("mpesa_receipt_number"))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .build();
+    }
+
+    private static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private record Cursor(LocalDateTime createdAt, long id) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.config.TransactionLimitProperties;
+import com.sacco.banking.entity.Member;
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.enums.MemberTier;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.exception.BadRequestException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Per-transaction and sliding-window limits (count and amount) per member and transaction type.
+ * Usage is kept in transaction_limit_usage in hourly buckets, shared by every node; a reservation
+ * is checked and counted under a lock on the member and type, in the caller's transaction, so it
+ * is given back with everything else when that transaction does not commit. Reversals give their
+ * usage back too.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionLimitService {
+
+    // First key of the two-key advisory locks that serialize reservations per member and type
+    private static final int LOCK_KEY = 0x6c696d;
+
+    private static final String WINDOW_SQL =
+            "SELECT COALESCE(SUM(debit_count), 0) AS debit_count, COALESCE(SUM(debit_amount), 0) AS debit_amount " +
+            "FROM transaction_limit_usage WHERE member_id = ? AND transaction_type = ? AND hour_start > ?";
+
+    private static final String ADD_SQL =
+            "INSERT INTO transaction_limit_usage (id, member_id, transaction_type, hour_start, debit_count, debit_amount) " +
+            "VALUES (nextval('transaction_limit_usage_seq'), ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (member_id, transaction_type, hour_start) DO UPDATE SET " +
+            "debit_count = GREATEST(transaction_limit_usage.debit_count + EXCLUDED.debit_count, 0), " +
+            "debit_amount = GREATEST(transaction_limit_usage.debit_amount + EXCLUDED.debit_amount, 0)";
+
+    // Seeds the window from the debits made before usage was recorded; a no-op once it has been
+    private static final String SEED_SQL =
+            "INSERT INTO transaction_limit_usage (id, member_id, transaction_type, hour_start, debit_count, debit_amount) " +
+            "SELECT nextval('transaction_limit_usage_seq'), u.member_id, u.transaction_type, u.hour_start, u.debit_count, u.debit_amount " +
+            "FROM (SELECT a.member_id, t.transaction_type, date_trunc('hour', t.created_at) AS hour_start, " +
+            "COUNT(*) AS debit_count, SUM(t.amount) AS debit_amount " +
+            "FROM transactions t JOIN accounts a ON a.id = t.from_account_id " +
+            "WHERE t.created_at >= ? AND t.transaction_type = ANY (?) AND t.status NOT IN ('FAILED', 'CANCELLED', 'REVERSED') " +
+            "GROUP BY a.member_id, t.transaction_type, date_trunc('hour', t.created_at)) u " +
+            "WHERE NOT EXISTS (SELECT 1 FROM transaction_limit_usage) " +
+            "ON CONFLICT (member_id, transaction_type, hour_start) DO NOTHING";
+
+    private final TransactionLimitProperties properties;
+    private final AccountDirectory accountDirectory;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Fill the window from the transactions table the first time usage is recorded
+     */
+    @Transactional
+    public void load() {
+        Set<TransactionType> limitedTypes = properties.getLimits().keySet();
+        if (limitedTypes.isEmpty()) {
+            return;
+        }
+        int seeded = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SEED_SQL);
+            statement.setTimestamp(1, Timestamp.valueOf(windowStart()));
+            statement.setArray(2, connection.createArrayOf("text", limitedTypes.stream().map(Enum::name).toArray()));
+            return statement;
+        });
+        if (seeded > 0) {
+            log.info("Transaction limits seeded {} hourly buckets from existing transactions", seeded);
+        }
+    }
+
+    /**
+     * Count the amount against the member's limits for the type, or reject it when a limit would be
+     * exceeded. The reservation commits or rolls back with the caller's transaction.
+     */
+    @Transactional
+    public void reserve(Member member, TransactionType type, BigDecimal amount) {
+        MemberTier tier = MemberTier.fromCreditScore(member.getCreditScore());
+        TransactionLimitProperties.Limit limit = properties.limitFor(type, tier);
+        if (limit == null) {
+            return;
+        }
+
+        if (limit.getMaxPerTransaction() != null && amount.compareTo(limit.getMaxPerTransaction()) > 0) {
+            throw new BadRequestException(String.format("Amount exceeds the limit of %s per transaction", limit.getMaxPerTransaction()));
+        }
+        if (limit.getMaxCount() == null && limit.getMaxAmount() == null) {
+            return;
+        }
+
+        // Held until the caller commits, so no other node counts against the same window meanwhile
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", rs -> {
+        }, LOCK_KEY, Objects.hash(member.getId(), type.name()));
+        Map<String, Object> window = jdbcTemplate.queryForMap(WINDOW_SQL, member.getId(), type.name(),
+                Timestamp.valueOf(windowStart()));
+        long count = ((Number) window.get("debit_count")).longValue() + 1;
+        BigDecimal total = ((BigDecimal) window.get("debit_amount")).add(amount);
+
+        int hours = properties.getWindowHours();
+        if (limit.getMaxCount() != null && count > limit.getMaxCount()) {
+            throw new BadRequestException(String.format("Limit of %d transactions per %d hours reached", limit.getMaxCount(), hours));
+        }
+        if (limit.getMaxAmount() != null && total.compareTo(limit.getMaxAmount()) > 0) {
+            throw new BadRequestException(String.format("Amount exceeds the limit of %s per %d hours", limit.getMaxAmount(), hours));
+        }
+        add(member.getId(), type, LocalDateTime.now(), 1, amount);
+    }
+
+    /**
+     * Give back what a reservation counted, for a debit that was not made after all
+     */
+    @Transactional
+    public void release(Long memberId, TransactionType type, BigDecimal amount, LocalDateTime reservedAt) {
+        if (properties.getLimits().containsKey(type)) {
+            add(memberId, type, reservedAt, -1, amount.negate());
+        }
+    }
+
+    /**
+     * Give back the usage of a reversed transaction, counted against the member who paid it
+     */
+    @Transactional
+    public void recordReversed(Transaction transaction) {
+        if (transaction.getFromAccount() == null || !properties.getLimits().containsKey(transaction.getTransactionType())) {
+            return;
+        }
+        accountDirectory.findById(transaction.getFromAccount().getId()).ifPresent(account ->
+                release(account.getMemberId(), transaction.getTransactionType(), transaction.getAmount(), transaction.getCreatedAt()));
+    }
+
+    /**
+     * Drop buckets that have left the window
+     */
+    @Scheduled(fixedDelayString = "${transaction-limits.eviction-interval-ms:600000}")
+    public void evictIdleWindows() {
+        jdbcTemplate.update("DELETE FROM transaction_limit_usage WHERE hour_start <= ?", Timestamp.valueOf(windowStart()));
+    }
+
+    private void add(Long memberId, TransactionType type, LocalDateTime at, int count, BigDecimal amount) {
+        jdbcTemplate.update(ADD_SQL, memberId, type.name(), Timestamp.valueOf(at.truncatedTo(ChronoUnit.HOURS)), count, amount);
+    }
+
+    // Buckets starting after this are inside the window, the current hour included
+    private LocalDateTime windowStart() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(properties.getWindowHours());
+    }
+}
@@ -0,0 +1,332 @@
+package com.sacco.banking.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps transactions range-partitioned by month on created_at. Partitions are created a few months
+ * ahead, and those past the retention are detached: they stay in the database as standalone tables
+ * but no longer weigh on the indexes, plans and vacuum of the live table. While archiving is on, a
+ * partition that still holds rows is never detached, as the archiver would no longer see them.
+ * Rows outside every monthly partition land in a default partition and move to their month's
+ * partition once it is created. Unique keys of a partitioned table are only unique per partition,
+ * so transaction references are kept unique across the table in transaction_references.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionPartitionService {
+
+    private static final String PREFIX = "transactions_p";
+    private static final String DEFAULT_PARTITION = "transactions_default";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Serializes conversion and maintenance across nodes
+    private static final long LOCK_KEY = 0x7472616e73L;
+
+    // Keys and indexes of the partitioned table; unique ones must include the partition key
+    // Every reference ever issued, archived ones included; filled by a trigger on every insert path
+    private static final List<String> REFERENCES = List.of(
+            "CREATE TABLE IF NOT EXISTS transaction_references (transaction_id varchar(255) PRIMARY KEY, " +
+            "created_at timestamp(6) NOT NULL)",
+            "CREATE OR REPLACE FUNCTION transactions_reference_unique() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+            "BEGIN INSERT INTO transaction_references (transaction_id, created_at) VALUES (NEW.transaction_id, NEW.created_at); " +
+            "RETURN NEW; END $$",
+            "CREATE TRIGGER transactions_reference_unique AFTER INSERT ON transactions " +
+            "FOR EACH ROW EXECUTE FUNCTION transactions_reference_unique()",
+            // Legacy duplicates keep their first row; the fallback lookup tolerates them
+            "INSERT INTO transaction_references (transaction_id, created_at) " +
+            "SELECT transaction_id, MIN(created_at) FROM transactions GROUP BY transaction_id ON CONFLICT DO NOTHING"
+    );
+
+    private static final List<String> CONSTRAINTS = List.of(
+            "ALTER TABLE transactions ADD CONSTRAINT transactions_pkey PRIMARY KEY (id, created_at)",
+            "ALTER TABLE transactions ADD CONSTRAINT uk_transactions_transaction_id_created UNIQUE (transaction_id, created_at)",
+            "CREATE INDEX idx_transactions_mpesa_receipt ON transactions (mpesa_receipt_number)",
+            "CREATE INDEX idx_transactions_checkout_request ON transactions (checkout_request_id)",
+            "CREATE INDEX idx_transactions_status_created ON transactions (status, created_at)",
+            "CREATE INDEX idx_transactions_from_account_created ON transactions (from_account_id, created_at, id)",
+            "CREATE INDEX idx_transactions_to_account_created ON transactions (to_account_id, created_at, id)"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${transactions.partitioning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transactions.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${transactions.partitioning.detach-after-months:0}")
+    private int detachAfterMonths;
+
+    @Value("${archive.transactions.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${archive.transactions.age-days:365}")
+    private long archiveAgeDays;
+
+    // How long dropping a partition waits for the lock on transactions before leaving it to the next run
+    @Value("${transactions.partitioning.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+
+    @PostConstruct
+    void checkRetention() {
+        // A month is archived once all of it is older than the age; it must still be attached then
+        if (enabled && archiveEnabled && detachAfterMonths > 0 && detachAfterMonths * 28L < archiveAgeDays) {
+            throw new IllegalStateException("transactions.partitioning.detach-after-months (" + detachAfterMonths +
+                    ") must leave months attached until archive.transactions.age-days (" + archiveAgeDays + ") has archived them");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('transactions') AND relkind = 'p')",
+                Boolean.class));
+    }
+
+    /**
+     * Replace the plain transactions table the schema update created with a partitioned one holding
+     * the same rows. Runs once; other nodes starting at the same time wait and then find it done.
+     */
+    @Transactional
+    public void partition() {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+        Boolean plain = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('transactions') AND relkind = 'r')",
+                Boolean.class);
+        if (!Boolean.TRUE.equals(plain)) {
+            return;
+        }
+        jdbcTemplate.execute("LOCK TABLE transactions IN ACCESS EXCLUSIVE MODE");
+
+        dropReferencingForeignKeys();
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList(
+                "SELECT conname, pg_get_constraintdef(oid) AS definition FROM pg_constraint " +
+                "WHERE conrelid = 'transactions'::regclass AND contype = 'f'");
+
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(created_at) AS first, MAX(created_at) AS last FROM transactions");
+        YearMonth current = YearMonth.now();
+        YearMonth first = range.get("first") != null ? YearMonth.from(((Timestamp) range.get("first")).toLocalDateTime()) : current;
+        YearMonth last = range.get("last") != null ? YearMonth.from(((Timestamp) range.get("last")).toLocalDateTime()) : current;
+
+        jdbcTemplate.execute("ALTER TABLE transactions RENAME TO transactions_unpartitioned");
+        jdbcTemplate.execute("CREATE TABLE transactions (LIKE transactions_unpartitioned INCLUDING DEFAULTS) " +
+                "PARTITION BY RANGE (created_at)");
+        createPartitions(first, max(last, current.plusMonths(monthsAhead)));
+        jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF transactions DEFAULT");
+
+        int copied = jdbcTemplate.update("INSERT INTO transactions SELECT * FROM transactions_unpartitioned");
+        // Ledger legs carry the partition key of their transaction, so joins from the ledger are pruned
+        jdbcTemplate.update("UPDATE ledger_entries e SET transaction_created_at = t.created_at " +
+                "FROM transactions_unpartitioned t WHERE t.id = e.transaction_id AND e.transaction_created_at IS NULL");
+        jdbcTemplate.execute("DROP TABLE transactions_unpartitioned");
+
+        // Built after the copy, once per partition, instead of maintained row by row
+        CONSTRAINTS.forEach(jdbcTemplate::execute);
+        for (Map<String, Object> foreignKey : foreignKeys) {
+            jdbcTemplate.execute("ALTER TABLE transactions ADD CONSTRAINT \"" + foreignKey.get("conname") + "\" " +
+                    foreignKey.get("definition"));
+        }
+
+        log.info("Partitioned transactions by month from {} to {}: {} rows moved", first, last, copied);
+    }
+
+    /**
+     * Keep transaction references unique across all partitions, and across the plain table too.
+     * Runs after {@link #partition()}, which replaces the table the trigger sits on.
+     */
+    @Transactional
+    public void ensureUniqueReferences() {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass('transactions') IS NOT NULL", Boolean.class))) {
+            return;
+        }
+        Boolean present = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_trigger WHERE tgrelid = 'transactions'::regclass " +
+                "AND tgname = 'transactions_reference_unique')", Boolean.class);
+        if (!Boolean.TRUE.equals(present)) {
+            REFERENCES.forEach(jdbcTemplate::execute);
+            log.info("Transaction references are now kept unique across partitions");
+        }
+    }
+
+    /**
+     * Drop foreign keys that point at transactions. They can only reference a partitioned table
+     * through a key that includes created_at, and would stop archived rows from being deleted.
+     */
+    @Transactional
+    public void dropReferencingForeignKeys() {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass('transactions') IS NOT NULL", Boolean.class))) {
+            return;
+        }
+        List<Map<String, Object>> referencing = jdbcTemplate.queryForList(
+                "SELECT conrelid::regclass::text AS table_name, conname FROM pg_constraint " +
+                "WHERE confrelid = 'transactions'::regclass AND contype = 'f'");
+        for (Map<String, Object> constraint : referencing) {
+            jdbcTemplate.execute("ALTER TABLE " + constraint.get("table_name") +
+                    " DROP CONSTRAINT \"" + constraint.get("conname") + "\"");
+            log.info("Dropped foreign key {} of {} on transactions", constraint.get("conname"), constraint.get("table_name"));
+        }
+    }
+
+    /**
+     * Create the coming partitions and detach those past the retention
+     */
+    @Scheduled(cron = "${transactions.partitioning.maintenance-cron:0 30 0 * * *}")
+    @Transactional
+    public void maintain() {
+        if (!enabled || !isPartitioned()) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(" + LOCK_KEY + ")", Boolean.class))) {
+            return;
+        }
+
+        YearMonth current = YearMonth.now();
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class, DEFAULT_PARTITION))) {
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF transactions DEFAULT");
+        }
+        int created = createPartitions(current, current.plusMonths(monthsAhead));
+
+        List<String> detached = new ArrayList<>();
+        List<String> kept = new ArrayList<>();
+        if (detachAfterMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(detachAfterMonths);
+            for (String partition : listPartitions()) {
+                if (!monthOf(partition).isBefore(oldestKept)) {
+                    continue;
+                }
+                // Archived rows are deleted, so whatever is left has not been archived yet
+                if (archiveEnabled && Boolean.TRUE.equals(
+                        jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + partition + ")", Boolean.class))) {
+                    kept.add(partition);
+                    continue;
+                }
+                jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + partition);
+                detached.add(partition);
+            }
+        }
+
+        if (created > 0 || !detached.isEmpty()) {
+            log.info("Transaction partitions: {} created, detached {}", created, detached);
+        }
+        if (!kept.isEmpty()) {
+            log.warn("Transaction partitions past the retention still hold unarchived rows and stay attached: {}", kept);
+        }
+        Timestamp stray = jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM " + DEFAULT_PARTITION, Timestamp.class);
+        if (stray != null) {
+            log.warn("Transactions from {} on fall outside every monthly partition; they move to theirs once it is created", stray);
+        }
+    }
+
+    /**
+     * Drop the partitions of months before the cutoff once nothing is left in them (their rows were
+     * archived). Each is detached and dropped in a short transaction of its own that gives up after
+     * the lock timeout rather than queue traffic on transactions behind it; a partition left over
+     * is dropped by a later run.
+     *
+     * @return number of partitions dropped
+     */
+    public int dropEmptyBefore(YearMonth cutoff) {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int dropped = 0;
+        for (String partition : listPartitions()) {
+            if (!monthOf(partition).isBefore(cutoff)) {
+                continue;
+            }
+            try {
+                if (Boolean.TRUE.equals(transaction.execute(status -> dropIfEmpty(partition)))) {
+                    dropped++;
+                }
+            } catch (DataAccessException e) {
+                log.warn("Could not drop transaction partition {}, retrying next run: {}", partition, e.getMessage());
+            }
+        }
+        return dropped;
+    }
+
+    private boolean dropIfEmpty(String partition) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + partition + ")", Boolean.class))) {
+            return false;
+        }
+        jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + partition);
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        log.info("Dropped empty transaction partition {}", partition);
+        return true;
+    }
+
+    /**
+     * Names of the attached partitions, oldest first
+     */
+    public List<String> listPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'transactions'::regclass AND c.relname LIKE '" + PREFIX + "%' ORDER BY c.relname",
+                String.class);
+    }
+
+    private int createPartitions(YearMonth from, YearMonth to) {
+        boolean hasDefault = Boolean.TRUE.equals(
+                jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, DEFAULT_PARTITION));
+        int created = 0;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            String name = PREFIX + month.format(SUFFIX);
+            if (Boolean.FALSE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class, name))) {
+                continue;
+            }
+            String range = "FOR VALUES FROM ('" + bound(month) + "') TO ('" + bound(month.plusMonths(1)) + "')";
+            String inMonth = " WHERE created_at >= '" + bound(month) + "' AND created_at < '" + bound(month.plusMonths(1)) + "'";
+            if (hasDefault && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + inMonth + ")", Boolean.class))) {
+                // The month's rows have to leave the default partition before its partition can exist
+                jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE transactions INCLUDING DEFAULTS)");
+                int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + inMonth + " RETURNING *) " +
+                        "INSERT INTO " + name + " SELECT * FROM moved");
+                jdbcTemplate.execute("ALTER TABLE transactions ATTACH PARTITION " + name + " " + range);
+                log.info("Moved {} transactions from the default partition into {}", moved, name);
+            } else {
+                jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF transactions " + range);
+            }
+            created++;
+        }
+        return created;
+    }
+
+    private static String bound(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay()).toString();
+    }
+
+    private static YearMonth monthOf(String partition) {
+        return YearMonth.parse(partition.substring(PREFIX.length()), SUFFIX);
+    }
+
+    private static YearMonth max(YearMonth a, YearMonth b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
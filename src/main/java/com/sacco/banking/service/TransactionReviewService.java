@@ -0,0 +1,143 @@
+package com.sacco.banking.service;
+
+import com.sacco.banking.dto.response.TransactionResponse;
+import com.sacco.banking.entity.Transaction;
+import com.sacco.banking.enums.TransactionStatus;
+import com.sacco.banking.enums.TransactionType;
+import com.sacco.banking.exception.BadRequestException;
+import com.sacco.banking.exception.ResourceNotFoundException;
+import com.sacco.banking.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Decisions on transfers a fraud rule held for review. The debit of a held transfer is already
+ * posted: approval releases the transfer, rejection cancels it and reverses the debit. Operators
+ * also settle M-Pesa transfers whose outcome never came back, once they checked it with Safaricom.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionReviewService {
+
+    private final TransactionRepository transactionRepository;
+    private final LedgerService ledgerService;
+    private final MpesaTransferProcessor mpesaTransferProcessor;
+
+    @Value("${mpesa.processing-timeout-minutes:5}")
+    private long processingTimeoutMinutes;
+
+    @Transactional(readOnly = true)
+    public Page<TransactionResponse> getTransactionsUnderReview(Pageable pageable) {
+        return transactionRepository.findByStatusOrderByCreatedAtAsc(TransactionStatus.UNDER_REVIEW, pageable)
+                .map(TransactionResponse::fromEntity);
+    }
+
+    @Transactional
+    public TransactionResponse approve(String transactionId, String reviewer) {
+        Transaction transaction = findUnderReview(transactionId);
+        boolean mpesa = transaction.getTransactionType() == TransactionType.MPESA_WITHDRAWAL;
+
+        // M-Pesa transfers still have to be sent; external transfers complete like unheld ones
+        TransactionStatus next = mpesa ? TransactionStatus.PROCESSING : TransactionStatus.COMPLETED;
+        if (transactionRepository.resolveReview(transaction.getId(), transaction.getCreatedAt(), next, null, LocalDateTime.now()) == 0) {
+            throw new BadRequestException("Transaction is no longer under review");
+        }
+
+        if (mpesa) {
+            Long id = transaction.getId();
+            LocalDateTime createdAt = transaction.getCreatedAt();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mpesaTransferProcessor.dispatch(id, createdAt, transaction.getExternalReference(), transaction.getAmount(),
+                            transaction.getDescription());
+                }
+            });
+        }
+
+        log.info("Transaction {} approved by {}", transactionId, reviewer);
+        return responseWithStatus(transaction, next);
+    }
+
+    @Transactional
+    public TransactionResponse reject(String transactionId, String reason, String reviewer) {
+        Transaction transaction = findUnderReview(transactionId);
+        String failureReason = "Rejected on review" + (reason != null && !reason.isBlank() ? ": " + reason : "");
+        if (failureReason.length() > 255) {
+            failureReason = failureReason.substring(0, 255);
+        }
+
+        if (transactionRepository.resolveReview(transaction.getId(), transaction.getCreatedAt(), TransactionStatus.CANCELLED, failureReason,
+                LocalDateTime.now()) == 0) {
+            throw new BadRequestException("Transaction is no longer under review");
+        }
+        // Give the member the held funds back
+        ledgerService.reverse(transaction);
+
+        log.info("Transaction {} rejected by {}: {}", transactionId, reviewer, reason);
+        return responseWithStatus(transaction, TransactionStatus.CANCELLED);
+    }
+
+    /**
+     * M-Pesa transfers past the processing timeout that have no CheckoutRequestID to query, oldest first
+     */
+    @Transactional(readOnly = true)
+    public Page<TransactionResponse> getUnresolvedMpesaTransfers(Pageable pageable) {
+        return transactionRepository.findByTransactionTypeAndStatusAndCreatedAtBeforeAndCheckoutRequestIdIsNullOrderByCreatedAtAsc(
+                        TransactionType.MPESA_WITHDRAWAL, TransactionStatus.PROCESSING,
+                        LocalDateTime.now().minusMinutes(processingTimeoutMinutes), pageable)
+                .map(TransactionResponse::fromEntity);
+    }
+
+    /**
+     * Settle a PROCESSING M-Pesa transfer: a paid one completes, an unpaid one fails and is reversed
+     */
+    @Transactional
+    public TransactionResponse resolveMpesaTransfer(String transactionId, boolean paid, String receiptNumber, String reviewer) {
+        Transaction transaction = transactionRepository.findByReference(transactionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
+        if (transaction.getTransactionType() != TransactionType.MPESA_WITHDRAWAL
+                || transaction.getStatus() != TransactionStatus.PROCESSING) {
+            throw new BadRequestException("Transaction is not an M-Pesa transfer awaiting its outcome");
+        }
+
+        boolean resolved = paid
+                ? transactionRepository.markCompletedIfProcessing(transaction.getId(), transaction.getCreatedAt(),
+                        receiptNumber, LocalDateTime.now()) > 0
+                : mpesaTransferProcessor.failTransfer(transaction.getId(), transaction.getCreatedAt(),
+                        "M-Pesa payment not made (confirmed on review)");
+        if (!resolved) {
+            throw new BadRequestException("Transaction is no longer awaiting its outcome");
+        }
+
+        TransactionStatus status = paid ? TransactionStatus.COMPLETED : TransactionStatus.FAILED;
+        log.info("M-Pesa transfer {} resolved as {} by {}", transactionId, status, reviewer);
+        return responseWithStatus(transaction, status);
+    }
+
+    // The row was changed by a guarded update; the loaded entity is left untouched so its flush cannot undo it
+    private TransactionResponse responseWithStatus(Transaction transaction, TransactionStatus status) {
+        TransactionResponse response = TransactionResponse.fromEntity(transaction);
+        response.setStatus(status.name());
+        return response;
+    }
+
+    private Transaction findUnderReview(String transactionId) {
+        Transaction transaction = transactionRepository.findByReference(transactionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
+        if (transaction.getStatus() != TransactionStatus.UNDER_REVIEW) {
+            throw new BadRequestException("Transaction is not under review");
+        }
+        return transaction;
+    }
+}
@@ -6,173 +6,178 @@ import com.sacco.banking.entity.*;
 import com.sacco.banking.enums.TransactionStatus;
 import com.sacco.banking.enums.TransactionType;
 import com.sacco.banking.exception.BadRequestException;
-import com.sacco.banking.exception.InsufficientFundsException;
+import com.sacco.banking.exception.ResourceNotFoundException;
 import com.sacco.banking.repository.AccountRepository;
 import com.sacco.banking.repository.TransactionRepository;
+import com.sacco.banking.service.fraud.FraudScreeningService;
+import com.sacco.banking.util.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.time.LocalDateTime;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class TransferService {
 
     private final AccountRepository accountRepository;
+    private final AccountDirectory accountDirectory;
     private final TransactionRepository transactionRepository;
-    private final MpesaService mpesaService;
+    private final MpesaTransferProcessor mpesaTransferProcessor;
     private final FeeCalculationService feeCalculationService;
+    private final TransactionLimitService transactionLimitService;
+    private final FraudScreeningService fraudScreeningService;
+    private final LedgerService ledgerService;
+    private final IdGenerator idGenerator;
 
     @Transactional
     public TransactionResponse processInternalTransfer(TransferRequest request, Member member) {
-        Account fromAccount = accountRepository.findByAccountNumber(request.getFromAccountNumber())
-                .orElseThrow(() -> new BadRequestException("From account not found"));
-
-        Account toAccount = accountRepository.findByAccountNumber(request.getToAccountNumber())
-                .orElseThrow(() -> new BadRequestException("To account not found"));
+        AccountDirectory.AccountInfo fromAccount = accountDirectory.require(request.getFromAccountNumber(), "From account not found");
+        AccountDirectory.AccountInfo toAccount = accountDirectory.require(request.getToAccountNumber(), "To account not found");
 
         // Verify ownership of from account
-        if (!fromAccount.getMember().getId().equals(member.getId())) {
-            throw new BadRequestException("You don't own the source account");
+        verifySourceAccount(fromAccount, member);
+        if (!toAccount.isActive()) {
+            throw new BadRequestException("Destination account is not active");
         }
 
-        // Check balance
-        BigDecimal fee = feeCalculationService.calculateInternalTransferFee(request.getAmount());
-        BigDecimal totalDebit = request.getAmount().add(fee);
+        transactionLimitService.reserve(member, TransactionType.TRANSFER_INTERNAL, request.getAmount());
 
-        if (fromAccount.getBalance().compareTo(totalDebit) < 0) {
-            throw new InsufficientFundsException("Insufficient funds");
-        }
+        BigDecimal fee = feeCalculationService.calculateInternalTransferFee(request.getAmount());
 
         // Create transaction
         Transaction transaction = new Transaction();
-        transaction.setTransactionId(generateTransactionId());
+        transaction.setTransactionId(idGenerator.nextTransactionId("TXN"));
         transaction.setTransactionType(TransactionType.TRANSFER_INTERNAL);
         transaction.setAmount(request.getAmount());
         transaction.setFee(fee);
         transaction.setDescription(request.getDescription());
         transaction.setReference(request.getReference());
-        transaction.setFromAccount(fromAccount);
-        transaction.setToAccount(toAccount);
+        transaction.setFromAccount(accountRepository.getReferenceById(fromAccount.getId()));
+        transaction.setToAccount(accountRepository.getReferenceById(toAccount.getId()));
+        transaction.setDeviceId(request.getDeviceId());
         transaction.setStatus(TransactionStatus.COMPLETED);
 
-        // Update balances
-        fromAccount.setBalance(fromAccount.getBalance().subtract(totalDebit));
-        toAccount.setBalance(toAccount.getBalance().add(request.getAmount()));
-
-        // Save changes
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        // Guarded debit, credit and journal entries in one unit of work
+        Transaction savedTransaction = ledgerService.post(transaction, BalanceMutationService.Floor.ZERO);
 
-        return TransactionResponse.fromEntity(savedTransaction);
+        return TransactionResponse.fromEntity(savedTransaction, fromAccount.getAccountNumber(), toAccount.getAccountNumber());
     }
 
     @Transactional
     public TransactionResponse processExternalTransfer(TransferRequest request, Member member) {
-        Account fromAccount = accountRepository.findByAccountNumber(request.getFromAccountNumber())
-                .orElseThrow(() -> new BadRequestException("From account not found"));
+        AccountDirectory.AccountInfo fromAccount = accountDirectory.require(request.getFromAccountNumber(), "From account not found");
 
         // Verify ownership
-        if (!fromAccount.getMember().getId().equals(member.getId())) {
-            throw new BadRequestException("You don't own the source account");
-        }
+        verifySourceAccount(fromAccount, member);
+
+        transactionLimitService.reserve(member, TransactionType.TRANSFER_EXTERNAL, request.getAmount());
+        Optional<String> reviewReason = fraudScreeningService.screen(member, TransactionType.TRANSFER_EXTERNAL,
+                request.getAmount(), request.getDeviceId());
 
         // Calculate fee
         BigDecimal fee = feeCalculationService.calculateExternalTransferFee(request.getAmount());
-        BigDecimal totalDebit = request.getAmount().add(fee);
-
-        if (fromAccount.getBalance().compareTo(totalDebit) < 0) {
-            throw new InsufficientFundsException("Insufficient funds");
-        }
 
         // Create transaction
         Transaction transaction = new Transaction();
-        transaction.setTransactionId(generateTransactionId());
+        transaction.setTransactionId(idGenerator.nextTransactionId("TXN"));
         transaction.setTransactionType(TransactionType.TRANSFER_EXTERNAL);
         transaction.setAmount(request.getAmount());
         transaction.setFee(fee);
         transaction.setDescription(request.getDescription());
         transaction.setReference(request.getReference());
-        transaction.setFromAccount(fromAccount);
+        transaction.setFromAccount(accountRepository.getReferenceById(fromAccount.getId()));
         transaction.setExternalReference(request.getToAccountNumber());
-        transaction.setStatus(TransactionStatus.PROCESSING);
-
-        // Update balance
-        fromAccount.setBalance(fromAccount.getBalance().subtract(totalDebit));
-        accountRepository.save(fromAccount);
+        transaction.setDeviceId(request.getDeviceId());
+        // A held transfer keeps its debit until a reviewer approves or rejects it
+        transaction.setStatus(reviewReason.isPresent() ? TransactionStatus.UNDER_REVIEW : TransactionStatus.PROCESSING);
+        transaction.setReviewReason(reviewReason.orElse(null));
 
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        Transaction savedTransaction = ledgerService.post(transaction, BalanceMutationService.Floor.ZERO);
 
-        // TODO: Integrate with external banking API
-        // For now, mark as completed
-        savedTransaction.setStatus(TransactionStatus.COMPLETED);
-        transactionRepository.save(savedTransaction);
+        if (reviewReason.isEmpty()) {
+            // TODO: Integrate with external banking API
+            // For now, mark as completed
+            savedTransaction.setStatus(TransactionStatus.COMPLETED);
+            transactionRepository.save(savedTransaction);
+        }
 
-        return TransactionResponse.fromEntity(savedTransaction);
+        return TransactionResponse.fromEntity(savedTransaction, fromAccount.getAccountNumber(), null);
     }
 
     @Transactional
     public TransactionResponse processMpesaTransfer(TransferRequest request, Member member) {
-        Account fromAccount = accountRepository.findByAccountNumber(request.getFromAccountNumber())
-                .orElseThrow(() -> new BadRequestException("From account not found"));
+        AccountDirectory.AccountInfo fromAccount = accountDirectory.require(request.getFromAccountNumber(), "From account not found");
 
         // Verify ownership
-        if (!fromAccount.getMember().getId().equals(member.getId())) {
-            throw new BadRequestException("You don't own the source account");
-        }
+        verifySourceAccount(fromAccount, member);
+
+        transactionLimitService.reserve(member, TransactionType.MPESA_WITHDRAWAL, request.getAmount());
+        Optional<String> reviewReason = fraudScreeningService.screen(member, TransactionType.MPESA_WITHDRAWAL,
+                request.getAmount(), request.getDeviceId());
 
         // Calculate fee
         BigDecimal fee = feeCalculationService.calculateMpesaTransferFee(request.getAmount());
-        BigDecimal totalDebit = request.getAmount().add(fee);
-
-        if (fromAccount.getBalance().compareTo(totalDebit) < 0) {
-            throw new InsufficientFundsException("Insufficient funds");
-        }
 
         // Create transaction
         Transaction transaction = new Transaction();
-        transaction.setTransactionId(generateTransactionId());
+        transaction.setTransactionId(idGenerator.nextTransactionId("TXN"));
         transaction.setTransactionType(TransactionType.MPESA_WITHDRAWAL);
         transaction.setAmount(request.getAmount());
         transaction.setFee(fee);
         transaction.setDescription(request.getDescription());
         transaction.setReference(request.getReference());
-        transaction.setFromAccount(fromAccount);
+        transaction.setFromAccount(accountRepository.getReferenceById(fromAccount.getId()));
         transaction.setExternalReference(request.getToAccountNumber()); // M-Pesa number
-        transaction.setStatus(TransactionStatus.PROCESSING);
+        transaction.setDeviceId(request.getDeviceId());
+        transaction.setStatus(reviewReason.isPresent() ? TransactionStatus.UNDER_REVIEW : TransactionStatus.PROCESSING);
+        transaction.setReviewReason(reviewReason.orElse(null));
 
-        // Update balance
-        fromAccount.setBalance(fromAccount.getBalance().subtract(totalDebit));
-        accountRepository.save(fromAccount);
+        Transaction savedTransaction = ledgerService.post(transaction, BalanceMutationService.Floor.ZERO);
 
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        if (reviewReason.isPresent()) {
+            // Sent to M-Pesa once approved
+            return TransactionResponse.fromEntity(savedTransaction, fromAccount.getAccountNumber(), null);
+        }
 
-        // Process M-Pesa transfer
-        try {
-            String mpesaReceiptNumber = mpesaService.sendMoney(
-                    request.getToAccountNumber(),
-                    request.getAmount(),
-                    request.getDescription()
-            );
+        // Call M-Pesa only once the debit is committed, and without holding this connection
+        Long id = savedTransaction.getId();
+        LocalDateTime createdAt = savedTransaction.getCreatedAt();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                mpesaTransferProcessor.dispatch(id, createdAt, request.getToAccountNumber(), request.getAmount(), request.getDescription());
+            }
+        });
+
+        return TransactionResponse.fromEntity(savedTransaction, fromAccount.getAccountNumber(), null);
+    }
 
-            savedTransaction.setMpesaReceiptNumber(mpesaReceiptNumber);
-            savedTransaction.setStatus(TransactionStatus.COMPLETED);
-        } catch (Exception e) {
-            // Reverse the transaction
-            fromAccount.setBalance(fromAccount.getBalance().add(totalDebit));
-            accountRepository.save(fromAccount);
+    @Transactional(readOnly = true)
+    public TransactionResponse getTransfer(String transactionId, Member member) {
+        Transaction transaction = transactionRepository.findByReference(transactionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
 
-            savedTransaction.setStatus(TransactionStatus.FAILED);
+        // Only the owner of the source account may see the transfer
+        if (transaction.getFromAccount() == null
+                || !transaction.getFromAccount().getMember().getId().equals(member.getId())) {
+            throw new ResourceNotFoundException("Transaction not found");
         }
 
-        transactionRepository.save(savedTransaction);
-        return TransactionResponse.fromEntity(savedTransaction);
+        return TransactionResponse.fromEntity(transaction);
     }
 
-    private String generateTransactionId() {
-        return "TXN-" + System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+    private void verifySourceAccount(AccountDirectory.AccountInfo fromAccount, Member member) {
+        if (!fromAccount.isOwnedBy(member)) {
+            throw new BadRequestException("You don't own the source account");
+        }
+        if (!fromAccount.isActive()) {
+            throw new BadRequestException("Source account is not active");
+        }
     }
-}
\ No newline at end of file
+}
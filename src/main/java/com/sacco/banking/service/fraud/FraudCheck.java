@@ -0,0 +1,13 @@
+package com.sacco.banking.service.fraud;
+
+import com.sacco.banking.enums.TransactionType;
+
+/**
+ * The transaction being screened
+ *
+ * @param amountCents amount in cents
+ * @param deviceId    device the request came from, when the client sent one
+ * @param atMillis    time of the request, epoch milliseconds
+ */
+public record FraudCheck(TransactionType type, long amountCents, String deviceId, long atMillis) {
+}
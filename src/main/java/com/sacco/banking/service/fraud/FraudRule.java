@@ -0,0 +1,15 @@
+package com.sacco.banking.service.fraud;
+
+import java.util.Optional;
+
+/**
+ * A fraud rule evaluated before money leaves the SACCO. Rules only read the member's activity
+ * loaded for the screening and must not query the database themselves.
+ */
+public interface FraudRule {
+
+    /**
+     * @return the reason to hold the transaction for review, or empty to let it through
+     */
+    Optional<String> evaluate(FraudCheck check, MemberActivity activity);
+}
@@ -0,0 +1,129 @@
+package com.sacco.banking.service.fraud;
+
+import com.sacco.banking.entity.Member;
+import com.sacco.banking.enums.TransactionStatus;
+import com.sacco.banking.enums.TransactionType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fraud-rule stage of the payment pipeline. Every {@link FraudRule} bean is evaluated against the
+ * member's recent deposits, outgoing transfers and devices, read from the transactions table for
+ * each screening, so every node screens against the same committed history.
+ */
+@Service
+@Slf4j
+public class FraudScreeningService {
+
+    // Credited member's deposits and debited member's transfers, newest first
+    private static final String ACTIVITY_SQL =
+            "SELECT t.transaction_type, t.amount, t.created_at FROM transactions t JOIN accounts a ON a.id = t.to_account_id " +
+            "WHERE a.member_id = :memberId AND t.created_at >= :since AND t.transaction_type IN (:deposits) " +
+            "AND t.status NOT IN (:excludedStatuses) " +
+            "UNION ALL " +
+            "SELECT t.transaction_type, t.amount, t.created_at FROM transactions t JOIN accounts a ON a.id = t.from_account_id " +
+            "WHERE a.member_id = :memberId AND t.created_at >= :since AND t.transaction_type IN (:transfers) " +
+            "AND t.status NOT IN (:excludedStatuses) " +
+            "ORDER BY created_at DESC LIMIT :limit";
+
+    private static final String KNOWN_DEVICE_SQL =
+            "SELECT EXISTS (SELECT 1 FROM transactions t JOIN accounts a ON a.id = t.from_account_id " +
+            "WHERE a.member_id = :memberId AND t.device_id = :deviceId AND t.created_at >= :since)";
+
+    // Activity that feeds the rules
+    private static final List<String> DEPOSITS = List.of(TransactionType.DEPOSIT.name(), TransactionType.MPESA_DEPOSIT.name());
+    private static final List<String> TRANSFERS =
+            List.of(TransactionType.TRANSFER_EXTERNAL.name(), TransactionType.MPESA_WITHDRAWAL.name());
+
+    private static final List<String> NOT_TRACKED = List.of(TransactionStatus.FAILED.name(),
+            TransactionStatus.CANCELLED.name(), TransactionStatus.REVERSED.name());
+
+    private final List<FraudRule> rules;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final Timer screeningTimer;
+
+    @Value("${fraud.activity-retention-hours:24}")
+    private long activityRetentionHours;
+
+    @Value("${fraud.device-history-days:90}")
+    private long deviceHistoryDays;
+
+    public FraudScreeningService(List<FraudRule> rules, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.rules = rules;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.screeningTimer = Timer.builder("fraud.screening")
+                .publishPercentiles(0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run every rule against the transaction.
+     *
+     * @return why the transaction should be held for review, or empty when no rule fired
+     */
+    public Optional<String> screen(Member member, TransactionType type, BigDecimal amount, String deviceId) {
+        long started = System.nanoTime();
+        FraudCheck check = new FraudCheck(type, toCents(amount), deviceId, System.currentTimeMillis());
+        MemberActivity activity = activity(member.getId(), deviceId);
+
+        List<String> reasons = new ArrayList<>(1);
+        for (FraudRule rule : rules) {
+            rule.evaluate(check, activity).ifPresent(reasons::add);
+        }
+        screeningTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        if (reasons.isEmpty()) {
+            return Optional.empty();
+        }
+        log.warn("Holding {} of {} by member {} for review: {}", type, amount, member.getMemberNumber(), reasons);
+        return Optional.of(String.join("; ", reasons));
+    }
+
+    private MemberActivity activity(Long memberId, String deviceId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("memberId", memberId)
+                .addValue("since", Timestamp.valueOf(LocalDateTime.now().minusHours(activityRetentionHours)))
+                .addValue("deposits", DEPOSITS)
+                .addValue("transfers", TRANSFERS)
+                .addValue("excludedStatuses", NOT_TRACKED)
+                .addValue("limit", MemberActivity.MAX_EVENTS);
+        List<MemberActivity.Event> events = namedParameterJdbcTemplate.query(ACTIVITY_SQL, params, (rs, rowNum) ->
+                new MemberActivity.Event(TransactionType.valueOf(rs.getString("transaction_type")),
+                        toCents(rs.getBigDecimal("amount")), rs.getTimestamp("created_at").getTime()));
+
+        MemberActivity activity = new MemberActivity();
+        // Oldest first, as the rules expect
+        for (int i = events.size() - 1; i >= 0; i--) {
+            activity.add(events.get(i));
+        }
+
+        if (deviceId != null && !deviceId.isBlank()) {
+            Boolean known = namedParameterJdbcTemplate.queryForObject(KNOWN_DEVICE_SQL, new MapSqlParameterSource()
+                    .addValue("memberId", memberId)
+                    .addValue("deviceId", deviceId)
+                    .addValue("since", Timestamp.valueOf(LocalDateTime.now().minusDays(deviceHistoryDays))), Boolean.class);
+            if (Boolean.TRUE.equals(known)) {
+                activity.addDevice(deviceId);
+            }
+        }
+        return activity;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).longValue();
+    }
+}
@@ -0,0 +1,68 @@
+package com.sacco.banking.service.fraud;
+
+import com.sacco.banking.enums.TransactionType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recent activity of one member, as loaded for a screening: deposits and outgoing transfers plus
+ * the devices the member has transferred from. Bounded, so a very active member cannot make rule
+ * evaluation slow.
+ */
+public class MemberActivity {
+
+    static final int MAX_EVENTS = 200;
+    static final int MAX_DEVICES = 20;
+
+    private final Deque<Event> events = new ArrayDeque<>();
+    private final Set<String> devices = new LinkedHashSet<>();
+
+    synchronized void add(Event event) {
+        if (events.size() == MAX_EVENTS) {
+            events.removeFirst();
+        }
+        events.addLast(event);
+    }
+
+    synchronized void addDevice(String deviceId) {
+        // Re-insert so the set keeps the most recently used devices
+        devices.remove(deviceId);
+        if (devices.size() == MAX_DEVICES) {
+            devices.remove(devices.iterator().next());
+        }
+        devices.add(deviceId);
+    }
+
+    public synchronized boolean isKnownDevice(String deviceId) {
+        return devices.contains(deviceId);
+    }
+
+    /**
+     * Events at or after the given time, oldest first
+     */
+    public synchronized List<Event> since(long fromMillis) {
+        List<Event> recent = new ArrayList<>();
+        for (Event event : events) {
+            if (event.atMillis() >= fromMillis) {
+                recent.add(event);
+            }
+        }
+        return recent;
+    }
+
+    static boolean isDeposit(TransactionType type) {
+        return type == TransactionType.DEPOSIT || type == TransactionType.MPESA_DEPOSIT;
+    }
+
+    public record Event(TransactionType type, long amountCents, long atMillis) {
+
+        public boolean isDeposit() {
+            return MemberActivity.isDeposit(type);
+        }
+    }
+}
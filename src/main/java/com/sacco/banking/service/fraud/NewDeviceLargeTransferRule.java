@@ -0,0 +1,39 @@
+package com.sacco.banking.service.fraud;
+
+import com.sacco.banking.enums.TransactionType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Large external or M-Pesa transfer from a device the member has not transferred from before.
+ * A transfer that names no device is treated as coming from an unknown one.
+ */
+@Component
+public class NewDeviceLargeTransferRule implements FraudRule {
+
+    private final long thresholdCents;
+
+    public NewDeviceLargeTransferRule(@Value("${fraud.new-device.amount-threshold:50000}") BigDecimal threshold) {
+        this.thresholdCents = threshold.movePointRight(2).longValue();
+    }
+
+    @Override
+    public Optional<String> evaluate(FraudCheck check, MemberActivity activity) {
+        if (check.type() != TransactionType.TRANSFER_EXTERNAL && check.type() != TransactionType.MPESA_WITHDRAWAL) {
+            return Optional.empty();
+        }
+        if (check.amountCents() < thresholdCents) {
+            return Optional.empty();
+        }
+        if (check.deviceId() == null || check.deviceId().isBlank()) {
+            return Optional.of("Large transfer without a device id");
+        }
+        if (activity.isKnownDevice(check.deviceId())) {
+            return Optional.empty();
+        }
+        return Optional.of("Large transfer from a new device");
+    }
+}
@@ -0,0 +1,45 @@
+package com.sacco.banking.service.fraud;
+
+import com.sacco.banking.enums.TransactionType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * M-Pesa cash-out of most of what was deposited only minutes earlier
+ */
+@Component
+public class RapidCashOutRule implements FraudRule {
+
+    private final long windowMillis;
+    private final long minimumCents;
+    private final BigDecimal share;
+
+    public RapidCashOutRule(@Value("${fraud.rapid-cash-out.window-minutes:30}") long windowMinutes,
+                            @Value("${fraud.rapid-cash-out.minimum-amount:10000}") BigDecimal minimumAmount,
+                            @Value("${fraud.rapid-cash-out.share-of-deposits:0.8}") BigDecimal share) {
+        this.windowMillis = windowMinutes * 60_000L;
+        this.minimumCents = minimumAmount.movePointRight(2).longValue();
+        this.share = share;
+    }
+
+    @Override
+    public Optional<String> evaluate(FraudCheck check, MemberActivity activity) {
+        if (check.type() != TransactionType.MPESA_WITHDRAWAL || check.amountCents() < minimumCents) {
+            return Optional.empty();
+        }
+
+        long deposited = 0;
+        for (MemberActivity.Event event : activity.since(check.atMillis() - windowMillis)) {
+            if (event.isDeposit()) {
+                deposited += event.amountCents();
+            }
+        }
+        if (deposited == 0 || BigDecimal.valueOf(check.amountCents()).compareTo(share.multiply(BigDecimal.valueOf(deposited))) < 0) {
+            return Optional.empty();
+        }
+        return Optional.of("M-Pesa cash-out right after a deposit");
+    }
+}
@@ -0,0 +1,48 @@
+package com.sacco.banking.service.fraud;
+
+import com.sacco.banking.enums.TransactionType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Many small deposits followed by one large external transfer
+ */
+@Component
+public class StructuredDepositsRule implements FraudRule {
+
+    private final long windowMillis;
+    private final long smallDepositCents;
+    private final int minimumDeposits;
+    private final long largeTransferCents;
+
+    public StructuredDepositsRule(@Value("${fraud.structuring.window-hours:24}") long windowHours,
+                                  @Value("${fraud.structuring.small-deposit-amount:10000}") BigDecimal smallDepositAmount,
+                                  @Value("${fraud.structuring.minimum-deposits:5}") int minimumDeposits,
+                                  @Value("${fraud.structuring.large-transfer-amount:50000}") BigDecimal largeTransferAmount) {
+        this.windowMillis = windowHours * 3_600_000L;
+        this.smallDepositCents = smallDepositAmount.movePointRight(2).longValue();
+        this.minimumDeposits = minimumDeposits;
+        this.largeTransferCents = largeTransferAmount.movePointRight(2).longValue();
+    }
+
+    @Override
+    public Optional<String> evaluate(FraudCheck check, MemberActivity activity) {
+        if (check.type() != TransactionType.TRANSFER_EXTERNAL || check.amountCents() < largeTransferCents) {
+            return Optional.empty();
+        }
+
+        int smallDeposits = 0;
+        for (MemberActivity.Event event : activity.since(check.atMillis() - windowMillis)) {
+            if (event.isDeposit() && event.amountCents() < smallDepositCents) {
+                smallDeposits++;
+            }
+        }
+        if (smallDeposits < minimumDeposits) {
+            return Optional.empty();
+        }
+        return Optional.of(String.format("%d small deposits followed by a large external transfer", smallDeposits));
+    }
+}
@@ -0,0 +1,227 @@
+package com.sacco.banking.util;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style ids: 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node id and a 12-bit
+ * per-millisecond sequence. Ids are unique across nodes with distinct node ids, strictly increasing
+ * per node, and generated with a single CAS and no locks or database round trips.
+ * <p>
+ * Each instance leases its node id from node_id_leases at startup and renews it in the background,
+ * so two live instances never share one. An instance that cannot renew in time stops issuing ids
+ * until it has leased a node id again.
+ */
+@Component
+@Slf4j
+public class IdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    public static final long EPOCH = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    // Lowest node id in the range nobody holds, or whose holder stopped renewing it
+    private static final String LEASE_SQL =
+            "INSERT INTO node_id_leases (node_id, owner, lease_until) " +
+            "SELECT s.id, ?, LOCALTIMESTAMP + ? * interval '1 second' FROM generate_series(?, ?) AS s(id) " +
+            "WHERE NOT EXISTS (SELECT 1 FROM node_id_leases l WHERE l.node_id = s.id AND l.lease_until >= LOCALTIMESTAMP) " +
+            "ORDER BY s.id LIMIT 1 " +
+            "ON CONFLICT (node_id) DO UPDATE SET owner = EXCLUDED.owner, lease_until = EXCLUDED.lease_until " +
+            "WHERE node_id_leases.lease_until < LOCALTIMESTAMP " +
+            "RETURNING node_id";
+
+    private static final String RENEW_SQL =
+            "UPDATE node_id_leases SET lease_until = LOCALTIMESTAMP + ? * interval '1 second' WHERE node_id = ? AND owner = ?";
+
+    private static final String RELEASE_SQL = "DELETE FROM node_id_leases WHERE node_id = ? AND owner = ?";
+
+    // Concurrent startups can pick the same free node id; the losers pick again
+    private static final int LEASE_ATTEMPTS = 5;
+
+    // Injected so the schema update (which creates node_id_leases) has run first
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final long configuredNodeId;
+    private final int leaseSeconds;
+    private final String owner;
+
+    private volatile long nodeId = -1;
+
+    // System.nanoTime() after which the lease may have run out and no id may be issued
+    private volatile long leaseDeadline;
+
+    // Last issued (timestamp << SEQUENCE_BITS | sequence)
+    private final AtomicLong lastState = new AtomicLong();
+
+    public IdGenerator(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate,
+                       @Value("${id-generator.node-id:-1}") long configuredNodeId,
+                       @Value("${id-generator.lease-seconds:60}") int leaseSeconds) {
+        if (configuredNodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("id-generator.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+        this.configuredNodeId = configuredNodeId;
+        this.leaseSeconds = leaseSeconds;
+        this.owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @PostConstruct
+    void init() {
+        if (!lease()) {
+            throw new IllegalStateException(configuredNodeId >= 0
+                    ? "id-generator.node-id " + configuredNodeId + " is held by another running instance"
+                    : "No id generator node id is free");
+        }
+    }
+
+    /**
+     * Keep the node id, or lease another one if it was lost
+     */
+    @Scheduled(fixedDelayString = "${id-generator.renew-interval-ms:15000}")
+    public void renew() {
+        long started = System.nanoTime();
+        try {
+            if (jdbcTemplate.update(RENEW_SQL, leaseSeconds, nodeId, owner) == 1) {
+                leaseDeadline = started + TimeUnit.SECONDS.toNanos(leaseSeconds);
+                return;
+            }
+            log.error("Lease of node id {} was lost; leasing another", nodeId);
+            leaseDeadline = started;
+            lease();
+        } catch (DataAccessException e) {
+            log.warn("Unable to renew the lease of node id {}", nodeId, e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        leaseDeadline = System.nanoTime();
+        try {
+            jdbcTemplate.update(RELEASE_SQL, nodeId, owner);
+        } catch (DataAccessException e) {
+            log.warn("Unable to release node id {}; it frees up when the lease runs out", nodeId, e);
+        }
+    }
+
+    public long nextId() {
+        if (System.nanoTime() - leaseDeadline > 0) {
+            throw new IllegalStateException("Id generator node id lease has run out");
+        }
+        while (true) {
+            long last = lastState.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            // Never go back in time: a clock step backwards or an exhausted sequence borrows from the next millisecond
+            long next = Math.max(now << SEQUENCE_BITS, last + 1);
+            if (lastState.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << TIMESTAMP_SHIFT) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Business transaction reference, e.g. TXN-48837562948812800
+     */
+    public String nextTransactionId(String prefix) {
+        return prefix + "-" + nextId();
+    }
+
+    /**
+     * Account number made of the prefix, a unique id and a Luhn check digit that catches mistyped digits
+     */
+    public String nextAccountNumber(String prefix) {
+        String digits = Long.toString(nextId());
+        return prefix + digits + luhnCheckDigit(digits);
+    }
+
+    /**
+     * Creation time encoded in an id produced by {@link #nextId()}
+     */
+    public static LocalDateTime timestampOf(long id) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + EPOCH), ZoneId.systemDefault());
+    }
+
+    /**
+     * Creation time of a reference made by {@link #nextTransactionId(String)}, or empty when the
+     * reference was not made that way
+     */
+    public static Optional<LocalDateTime> timestampOfReference(String reference) {
+        if (reference == null) {
+            return Optional.empty();
+        }
+        String digits = reference.substring(reference.lastIndexOf('-') + 1);
+        if (digits.isEmpty() || digits.length() > 19 || !digits.chars().allMatch(Character::isDigit)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(timestampOf(Long.parseLong(digits)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    static int luhnCheckDigit(String digits) {
+        int sum = 0;
+        boolean doubleIt = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubleIt) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleIt = !doubleIt;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private boolean lease() {
+        long first = configuredNodeId >= 0 ? configuredNodeId : 0;
+        long last = configuredNodeId >= 0 ? configuredNodeId : MAX_NODE_ID;
+        for (int attempt = 0; attempt < LEASE_ATTEMPTS; attempt++) {
+            long started = System.nanoTime();
+            List<Long> leased = jdbcTemplate.queryForList(LEASE_SQL, Long.class, owner, leaseSeconds, first, last);
+            if (!leased.isEmpty()) {
+                nodeId = leased.get(0);
+                leaseDeadline = started + TimeUnit.SECONDS.toNanos(leaseSeconds);
+                log.info("Id generator using node id {}", nodeId);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
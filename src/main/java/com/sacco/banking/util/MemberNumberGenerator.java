@@ -1,38 +1,31 @@
 package com.sacco.banking.util;
 
-import com.sacco.banking.repository.MemberRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+/**
+ * Hands out member numbers (MB001, ADM001, ...) from one database sequence per prefix, so numbers
+ * are unique across nodes. Taking a number holds no lock and commits on its own; numbers of a
+ * rolled-back registration are skipped.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MemberNumberGenerator {
 
-    private final MemberRepository memberRepository;
+    public static final String MEMBER_SEQUENCE = "member_number_mb_seq";
+    public static final String ADMIN_SEQUENCE = "member_number_adm_seq";
 
-    public synchronized String generateMemberNumber(boolean isAdmin) {
-        String prefix = isAdmin ? "ADM" : "MB";
-
-        // Get the current count of members with this prefix
-        long count = memberRepository.countByMemberNumberStartingWith(prefix);
+    private final JdbcTemplate jdbcTemplate;
 
-        // Generate the next number with proper padding
-        String memberNumber;
-        do {
-            count++;
-            String number = String.format("%03d", count);
-            memberNumber = prefix + number;
-        } while (memberRepository.existsByMemberNumber(memberNumber));
+    public String generateMemberNumber(boolean isAdmin) {
+        String prefix = isAdmin ? "ADM" : "MB";
+        Long number = jdbcTemplate.queryForObject("SELECT nextval(?)", Long.class, isAdmin ? ADMIN_SEQUENCE : MEMBER_SEQUENCE);
 
+        String memberNumber = prefix + String.format("%03d", number);
         log.info("Generated {} member number: {}", isAdmin ? "admin" : "member", memberNumber);
         return memberNumber;
     }
-
-    public String getNextMemberNumber(boolean isAdmin) {
-        String prefix = isAdmin ? "ADM" : "MB";
-        long count = memberRepository.countByMemberNumberStartingWith(prefix);
-        return prefix + String.format("%03d", count + 1);
-    }
-}
\ No newline at end of file
+}